@@ -6,8 +6,40 @@ repositories {
     mavenCentral()
 }
 
+// The library runs on Java 11; later APIs, like records and virtual threads, are found by
+// reflection. Tests use records, so they're compiled for the JDK running the build.
+tasks.named<JavaCompile>("compileJava") {
+    options.release.set(11)
+}
+
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets["main"].output
+        runtimeClasspath += sourceSets["main"].output
+    }
+}
+
 dependencies {
     testImplementation("junit:junit:4.12")
     testImplementation("com.google.guava:guava:28.0-jre")
     testImplementation("com.fasterxml.jackson.core:jackson-databind:2.9.9.1")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+// Runs the benchmarks in src/jmh with allocation profiling. Pass JMH options with -PjmhArgs, e.g.
+// ./gradlew jmh -PjmhArgs="ParseBenchmark -p lines=100000 -f 1"
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks."
+    group = "verification"
+    dependsOn("jmhClasses")
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    val resultsFile = layout.buildDirectory.file("reports/jmh/results.json").get().asFile
+    val extraArgs = (project.findProperty("jmhArgs") as String?)?.split(" ")?.filter { it.isNotEmpty() } ?: emptyList()
+    args = listOf("-prof", "gc", "-rf", "json", "-rff", resultsFile.path) + extraArgs
+    doFirst {
+        resultsFile.parentFile.mkdirs()
+    }
 }
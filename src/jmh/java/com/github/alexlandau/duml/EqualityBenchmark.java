@@ -0,0 +1,50 @@
+package com.github.alexlandau.duml;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EqualityBenchmark {
+    @Param({"100000"})
+    public int lines;
+    @Param({"false", "true"})
+    public boolean frozen;
+
+    private DumlNode tree;
+    private DumlNode equalTree;
+    private DumlNode differentTree;
+
+    @Setup
+    public void setUp() {
+        String duml = SyntheticDuml.generate(lines, 6, 8, 0.2, 24, 42);
+        tree = DumlParser.parse(duml, false).getDuml();
+        equalTree = DumlParser.parse(duml, false).getDuml();
+        differentTree = DumlParser.parse(duml + "level0_0 changed\n", false).getDuml();
+        if (frozen) {
+            tree = tree.freeze();
+            equalTree = equalTree.freeze();
+            differentTree = differentTree.freeze();
+        }
+    }
+
+    @Benchmark
+    public int hashCodeOfTree() {
+        return tree.hashCode();
+    }
+
+    @Benchmark
+    public boolean equalsEqualTree() {
+        return tree.equals(equalTree);
+    }
+
+    @Benchmark
+    public boolean equalsDifferentTree() {
+        return tree.equals(differentTree);
+    }
+}
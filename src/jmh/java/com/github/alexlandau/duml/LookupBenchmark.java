@@ -0,0 +1,70 @@
+package com.github.alexlandau.duml;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+    @Param({"100000"})
+    public int lines;
+    @Param({"8"})
+    public int maxDepth;
+    @Param({"false", "true"})
+    public boolean frozen;
+
+    private DumlNode root;
+    private String dottedKey;
+    private String[] keyParts;
+    private DumlPath path;
+
+    @Setup
+    public void setUp() {
+        root = DumlParser.parse(SyntheticDuml.generate(lines, maxDepth, 8, 0.2, 24, 42), false).getDuml();
+        if (frozen) {
+            root = root.freeze();
+        }
+        List<String> deepest = SyntheticDuml.deepestPath(root);
+        dottedKey = String.join(".", deepest);
+        keyParts = deepest.toArray(new String[0]);
+        path = DumlPath.of(dottedKey);
+    }
+
+    @Benchmark
+    public DumlNode getDotted() {
+        return root.get(dottedKey);
+    }
+
+    @Benchmark
+    public DumlNode getParts() {
+        String[] moreKeys = new String[keyParts.length - 1];
+        System.arraycopy(keyParts, 1, moreKeys, 0, moreKeys.length);
+        return root.get(keyParts[0], moreKeys);
+    }
+
+    @Benchmark
+    public DumlNode getPath() {
+        return root.get(path);
+    }
+
+    @Benchmark
+    public String getLastStringDotted() {
+        return root.getLastString(dottedKey);
+    }
+
+    @Benchmark
+    public String getLastStringPath() {
+        return root.getLastString(path);
+    }
+
+    @Benchmark
+    public DumlNode getMissing() {
+        return root.get(dottedKey + ".missing");
+    }
+}
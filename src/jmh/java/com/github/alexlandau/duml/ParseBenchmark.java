@@ -0,0 +1,84 @@
+package com.github.alexlandau.duml;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+    @Param({"100000"})
+    public int lines;
+    @Param({"6"})
+    public int maxDepth;
+    @Param({"8"})
+    public int fanOut;
+    @Param({"0.2"})
+    public double repeatedKeyRatio;
+    @Param({"false", "true"})
+    public boolean trimValues;
+
+    private String dumlText;
+    private byte[] dumlBytes;
+    private File dumlFile;
+    private byte[] snapshotBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        dumlText = SyntheticDuml.generate(lines, maxDepth, fanOut, repeatedKeyRatio, 24, 42);
+        dumlBytes = dumlText.getBytes(StandardCharsets.UTF_8);
+        dumlFile = File.createTempFile("parse-benchmark", ".duml");
+        Files.write(dumlFile.toPath(), dumlBytes);
+        snapshotBytes = DumlBinary.toBytes(DumlParser.parse(dumlText, trimValues));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(dumlFile.toPath());
+    }
+
+    @Benchmark
+    public DumlParseResult parseString() {
+        return DumlParser.parse(dumlText, trimValues);
+    }
+
+    @Benchmark
+    public DumlParseResult parseFile() throws IOException {
+        return DumlParser.parse(dumlFile, trimValues);
+    }
+
+    @Benchmark
+    public DumlParseResult parseBytes() {
+        return DumlParser.parse(dumlBytes, trimValues);
+    }
+
+    @Benchmark
+    public DumlParseResult parseMappedPath() throws IOException {
+        return DumlParser.parse(dumlFile.toPath(), trimValues);
+    }
+
+    @Benchmark
+    public DumlParseResult parseParallel() {
+        return DumlParser.parseParallel(ByteBuffer.wrap(dumlBytes), trimValues);
+    }
+
+    @Benchmark
+    public DumlParseResult readBinarySnapshot() {
+        return DumlBinary.read(snapshotBytes);
+    }
+
+    @Benchmark
+    public DumlNode parseLazyAndGetOneKey() {
+        DumlNode duml = DumlParser.parseLazy(ByteBuffer.wrap(dumlBytes), trimValues).getDuml();
+        return duml.get(duml.getMap().keySet().iterator().next());
+    }
+}
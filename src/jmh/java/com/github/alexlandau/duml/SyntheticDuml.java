@@ -0,0 +1,87 @@
+package com.github.alexlandau.duml;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic DUML documents for benchmarks.
+ */
+public final class SyntheticDuml {
+    private SyntheticDuml() {
+        // Not instantiable
+    }
+
+    /**
+     * Generates a document with the given number of lines. Each key has between one and maxDepth
+     * parts, and each part is one of fanOut names for its level. A repeatedKeyRatio of the lines
+     * reuse a key from an earlier line, adding another string to it. Values are random words of
+     * up to maxValueLength characters, some with surrounding whitespace for trimming to remove.
+     */
+    public static String generate(int lines, int maxDepth, int fanOut, double repeatedKeyRatio, int maxValueLength, long seed) {
+        Random random = new Random(seed);
+        List<String> usedKeys = new ArrayList<>();
+        StringBuilder duml = new StringBuilder(lines * (maxDepth * 6 + maxValueLength));
+        for (int line = 0; line < lines; line++) {
+            String key;
+            if (!usedKeys.isEmpty() && random.nextDouble() < repeatedKeyRatio) {
+                key = usedKeys.get(random.nextInt(usedKeys.size()));
+            } else {
+                key = randomKey(random, maxDepth, fanOut);
+                usedKeys.add(key);
+            }
+            duml.append(key).append(' ');
+            if (random.nextInt(8) == 0) {
+                duml.append("  ");
+            }
+            int valueLength = 1 + random.nextInt(maxValueLength);
+            for (int i = 0; i < valueLength; i++) {
+                duml.append((char) ('a' + random.nextInt(26)));
+            }
+            if (random.nextInt(8) == 0) {
+                duml.append('\t');
+            }
+            duml.append('\n');
+            if (random.nextInt(50) == 0) {
+                duml.append("# A comment line\n");
+            }
+        }
+        return duml.toString();
+    }
+
+    private static String randomKey(Random random, int maxDepth, int fanOut) {
+        int depth = 1 + random.nextInt(maxDepth);
+        StringBuilder key = new StringBuilder();
+        for (int level = 0; level < depth; level++) {
+            if (level > 0) {
+                key.append('.');
+            }
+            key.append("level").append(level).append('_').append(random.nextInt(fanOut));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Finds the path of one of the deepest strings nodes in the tree.
+     */
+    public static List<String> deepestPath(DumlNode root) {
+        List<String> deepest = new ArrayList<>();
+        findDeepest(root, new ArrayList<>(), deepest);
+        return deepest;
+    }
+
+    private static void findDeepest(DumlNode node, List<String> path, List<String> deepest) {
+        if (node.isStrings()) {
+            if (path.size() > deepest.size()) {
+                deepest.clear();
+                deepest.addAll(path);
+            }
+            return;
+        }
+        for (String key : node.getMap().keySet()) {
+            path.add(key);
+            findDeepest(node.getMap().get(key), path, deepest);
+            path.remove(path.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.alexlandau.duml;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark {
+    @Param({"100000"})
+    public int lines;
+    @Param({"6"})
+    public int maxDepth;
+    @Param({"8"})
+    public int fanOut;
+
+    private DumlNode duml;
+    private ByteBuffer buffer;
+    private final OutputStream discard = OutputStream.nullOutputStream();
+
+    @Setup
+    public void setUp() {
+        String dumlText = SyntheticDuml.generate(lines, maxDepth, fanOut, 0.2, 24, 42);
+        duml = DumlParser.parse(dumlText, false).getDuml();
+        buffer = ByteBuffer.allocate(dumlText.length() * 4);
+    }
+
+    @Benchmark
+    public String writeString() {
+        return DumlWriter.toString(duml);
+    }
+
+    @Benchmark
+    public void writeStream() throws IOException {
+        DumlWriter.write(duml, discard);
+    }
+
+    @Benchmark
+    public ByteBuffer writeBuffer() {
+        buffer.clear();
+        DumlWriter.write(duml, buffer);
+        return buffer;
+    }
+}
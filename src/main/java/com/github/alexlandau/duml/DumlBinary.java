@@ -0,0 +1,386 @@
+package com.github.alexlandau.duml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A compact binary form of a {@link DumlParseResult}, for loading a parsed document again without
+ * parsing its text. Reading a snapshot gives a frozen result equal to the one it was written from.
+ *
+ * The format is:
+ * <ul>
+ *     <li>the magic bytes "DUML" and a version byte;</li>
+ *     <li>the string table: the number of strings, then each distinct key part and value once,
+ *     as a byte length and its bytes;</li>
+ *     <li>the tree, as a node;</li>
+ *     <li>the lost nodes: their number, then for each one its location as a number of key parts
+ *     and their string indices, its source as one more than a string index (or 0 if it has none),
+ *     followed by its node.</li>
+ * </ul>
+ * A node is a tag byte, then the length in bytes of the rest of the node as a 4-byte int, then
+ * either the number of children followed by each child's key index and node, or the number of
+ * strings followed by their indices. Other numbers are unsigned varints. Strings are stored as
+ * UTF-8, or as UTF-16 if they have unpaired surrogates that UTF-8 can't represent; the low bit of
+ * the length says which.
+ */
+public final class DumlBinary {
+    private static final byte[] MAGIC = { 'D', 'U', 'M', 'L' };
+    private static final byte VERSION = 2;
+
+    private static final byte OBJECT_TAG = 0;
+    private static final byte STRINGS_TAG = 1;
+
+    private static final int UTF_8_FLAG = 0;
+    private static final int UTF_16_FLAG = 1;
+    // The length is shifted left to make room for the flag, and must still fit in an int
+    private static final int MAX_STRING_BYTES = Integer.MAX_VALUE >>> 1;
+
+    private DumlBinary() {
+        // Not instantiable
+    }
+
+    public static byte[] toBytes(DumlParseResult result) {
+        Output output = new Output();
+        new Writer(output).write(result);
+        return Arrays.copyOf(output.bytes, output.count);
+    }
+
+    /**
+     * Writes the snapshot to the stream, which is not closed.
+     */
+    public static void write(DumlParseResult result, OutputStream stream) throws IOException {
+        Output output = new Output();
+        new Writer(output).write(result);
+        stream.write(output.bytes, 0, output.count);
+    }
+
+    public static void write(DumlParseResult result, Path snapshotFile) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(snapshotFile)) {
+            write(result, stream);
+        }
+    }
+
+    public static DumlParseResult read(byte[] snapshot) {
+        return read(ByteBuffer.wrap(snapshot));
+    }
+
+    /**
+     * Reads a snapshot from the buffer's remaining bytes. The buffer's position and limit are not
+     * modified.
+     *
+     * @throws IllegalArgumentException if the bytes aren't a valid snapshot
+     */
+    public static DumlParseResult read(ByteBuffer snapshot) {
+        ByteBuffer input = snapshot.duplicate().order(ByteOrder.BIG_ENDIAN);
+        try {
+            return new Reader(input).read();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated or corrupt DUML snapshot", e);
+        }
+    }
+
+    /**
+     * Reads a snapshot from a memory-mapped view of the file.
+     */
+    public static DumlParseResult read(Path snapshotFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static final class Writer {
+        private final Output output;
+        private final Map<String, Integer> stringIndices = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        private Writer(Output output) {
+            this.output = output;
+        }
+
+        void write(DumlParseResult result) {
+            addStrings(result.getDuml());
+            for (LostNode lostNode : result.getLostNodes()) {
+                for (String keyPart : lostNode.getLocation()) {
+                    addString(keyPart);
+                }
+                if (lostNode.getSource() != null) {
+                    addString(lostNode.getSource().toString());
+                }
+                addStrings(lostNode.getNode());
+            }
+
+            output.write(MAGIC);
+            output.write(VERSION);
+            output.writeVarint(strings.size());
+            for (String string : strings) {
+                writeString(string);
+            }
+            writeNode(result.getDuml());
+            output.writeVarint(result.getLostNodes().size());
+            for (LostNode lostNode : result.getLostNodes()) {
+                output.writeVarint(lostNode.getLocation().size());
+                for (String keyPart : lostNode.getLocation()) {
+                    output.writeVarint(stringIndices.get(keyPart));
+                }
+                Path source = lostNode.getSource();
+                output.writeVarint(source == null ? 0 : stringIndices.get(source.toString()) + 1);
+                writeNode(lostNode.getNode());
+            }
+        }
+
+        private void addStrings(DumlNode node) {
+            if (node.isObject()) {
+                for (Map.Entry<String, DumlNode> entry : node.getMap().entrySet()) {
+                    addString(entry.getKey());
+                    addStrings(entry.getValue());
+                }
+            } else {
+                for (String string : node.getStrings()) {
+                    addString(string);
+                }
+            }
+        }
+
+        private void addString(String string) {
+            if (!stringIndices.containsKey(string)) {
+                stringIndices.put(string, strings.size());
+                strings.add(string);
+            }
+        }
+
+        private void writeString(String string) {
+            if (hasUnpairedSurrogate(string)) {
+                output.writeVarint(lengthHeader(string.length() * 2L, UTF_16_FLAG));
+                for (int i = 0; i < string.length(); i++) {
+                    char c = string.charAt(i);
+                    output.write((byte) (c >> 8));
+                    output.write((byte) c);
+                }
+            } else {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                output.writeVarint(lengthHeader(bytes.length, UTF_8_FLAG));
+                output.write(bytes);
+            }
+        }
+
+        private static int lengthHeader(long byteLength, int flag) {
+            if (byteLength > MAX_STRING_BYTES) {
+                throw new IllegalArgumentException("Can't write a string of " + byteLength
+                        + " bytes to a DUML snapshot; the most is " + MAX_STRING_BYTES);
+            }
+            return (int) byteLength << 1 | flag;
+        }
+
+        private void writeNode(DumlNode node) {
+            int start = output.count;
+            output.write(node.isObject() ? OBJECT_TAG : STRINGS_TAG);
+            // Filled in once the length is known
+            output.writeInt(0);
+            if (node.isObject()) {
+                output.writeVarint(node.getMap().size());
+                for (Map.Entry<String, DumlNode> entry : node.getMap().entrySet()) {
+                    output.writeVarint(stringIndices.get(entry.getKey()));
+                    writeNode(entry.getValue());
+                }
+            } else {
+                List<String> nodeStrings = node.getStrings();
+                output.writeVarint(nodeStrings.size());
+                for (int i = 0; i < nodeStrings.size(); i++) {
+                    output.writeVarint(stringIndices.get(nodeStrings.get(i)));
+                }
+            }
+            output.setInt(start + 1, output.count - start - 5);
+        }
+
+        private static boolean hasUnpairedSurrogate(String string) {
+            for (int i = 0; i < string.length(); i++) {
+                char c = string.charAt(i);
+                if (Character.isHighSurrogate(c) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Output {
+        private byte[] bytes = new byte[4096];
+        private int count = 0;
+
+        void write(byte b) {
+            ensureCapacity(1);
+            bytes[count++] = b;
+        }
+
+        void write(byte[] b) {
+            ensureCapacity(b.length);
+            System.arraycopy(b, 0, bytes, count, b.length);
+            count += b.length;
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            setInt(count, value);
+            count += 4;
+        }
+
+        void setInt(int offset, int value) {
+            bytes[offset] = (byte) (value >>> 24);
+            bytes[offset + 1] = (byte) (value >>> 16);
+            bytes[offset + 2] = (byte) (value >>> 8);
+            bytes[offset + 3] = (byte) value;
+        }
+
+        void writeVarint(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[count++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[count++] = (byte) value;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (count + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(count + extra, bytes.length * 2));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final ByteBuffer input;
+        private String[] strings;
+        private byte[] copyBuffer = new byte[0];
+
+        private Reader(ByteBuffer input) {
+            this.input = input;
+        }
+
+        DumlParseResult read() {
+            for (byte magicByte : MAGIC) {
+                if (input.get() != magicByte) {
+                    throw new IllegalArgumentException("Not a DUML snapshot");
+                }
+            }
+            byte version = input.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported DUML snapshot version " + version);
+            }
+            strings = new String[readCount()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString();
+            }
+            DumlNode duml = readNode();
+            LostNode[] lostNodes = new LostNode[readCount()];
+            for (int i = 0; i < lostNodes.length; i++) {
+                String[] location = new String[readCount()];
+                for (int j = 0; j < location.length; j++) {
+                    location[j] = strings[readVarint()];
+                }
+                int sourceIndex = readVarint();
+                Path source = sourceIndex == 0 ? null : Paths.get(strings[sourceIndex - 1]);
+                lostNodes[i] = new LostNode(Collections.unmodifiableList(Arrays.asList(location)), readNode(), source);
+            }
+            return new DumlParseResult(duml, Collections.unmodifiableList(Arrays.asList(lostNodes)));
+        }
+
+        private String readString() {
+            int header = readVarint();
+            int length = header >>> 1;
+            if (length > input.remaining()) {
+                throw new IllegalArgumentException("Corrupt DUML snapshot: a string of " + length
+                        + " bytes is longer than the " + input.remaining() + " bytes left");
+            }
+            if ((header & 1) == UTF_16_FLAG) {
+                char[] chars = new char[length / 2];
+                for (int i = 0; i < chars.length; i++) {
+                    chars[i] = input.getChar();
+                }
+                return new String(chars);
+            }
+            if (input.hasArray()) {
+                int start = input.position();
+                input.position(start + length);
+                return new String(input.array(), input.arrayOffset() + start, length, StandardCharsets.UTF_8);
+            }
+            if (copyBuffer.length < length) {
+                copyBuffer = new byte[Math.max(length, copyBuffer.length * 2)];
+            }
+            input.get(copyBuffer, 0, length);
+            return new String(copyBuffer, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private DumlNode readNode() {
+            byte tag = input.get();
+            int length = input.getInt();
+            if (length < 0 || length > input.remaining()) {
+                throw new IllegalArgumentException("Corrupt DUML snapshot: a node of " + length
+                        + " bytes doesn't fit in the " + input.remaining() + " bytes left");
+            }
+            int expectedEnd = input.position() + length;
+            DumlNode node;
+            if (tag == OBJECT_TAG) {
+                int childCount = readCount();
+                String[] keys = new String[childCount];
+                DumlNode[] values = new DumlNode[childCount];
+                for (int i = 0; i < childCount; i++) {
+                    keys[i] = strings[readVarint()];
+                    values[i] = readNode();
+                }
+                node = DumlNode.frozenObject(keys, values);
+            } else if (tag == STRINGS_TAG) {
+                String[] nodeStrings = new String[readCount()];
+                for (int i = 0; i < nodeStrings.length; i++) {
+                    nodeStrings[i] = strings[readVarint()];
+                }
+                node = DumlNode.frozenStrings(nodeStrings);
+            } else {
+                throw new IllegalArgumentException("Corrupt DUML snapshot: unknown node tag " + tag);
+            }
+            if (input.position() != expectedEnd) {
+                throw new IllegalArgumentException("Corrupt DUML snapshot: node length doesn't match its contents");
+            }
+            return node;
+        }
+
+        /**
+         * Reads the number of items that follow. Each takes at least a byte, so a count larger
+         * than what's left is rejected before anything is allocated for it.
+         */
+        private int readCount() {
+            int count = readVarint();
+            if (count > input.remaining()) {
+                throw new IllegalArgumentException("Corrupt DUML snapshot: " + count
+                        + " items can't fit in the " + input.remaining() + " bytes left");
+            }
+            return count;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = input.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Corrupt DUML snapshot: bad number");
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.github.alexlandau.duml;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Binds DUML trees onto records and interfaces, reading each of their values from the tree once,
+ * so that reading them afterwards is a plain field read rather than a lookup and a conversion.
+ *
+ * Each record component or interface method is bound to the key with its name, or the one given
+ * by {@link DumlKey}. Supported types are:
+ * <ul>
+ *     <li>String, from the last string at the key, or null if there is none;</li>
+ *     <li>int, long, double, and boolean and their boxed types, from the last string; if it's
+ *     missing, the boxed types are null and the primitives can't be bound;</li>
+ *     <li>{@link Duration}, from an ISO-8601 duration like "PT30S", or a number with one of the
+ *     units "ms", "s", "m", "h", or "d", like "30s";</li>
+ *     <li>List of any of the above, from all the strings at the key, empty if there are none;</li>
+ *     <li>{@link DumlNode}, for the node at the key itself;</li>
+ *     <li>other records and interfaces, bound from the node at the key.</li>
+ * </ul>
+ * Binders are created once per class, finding the key paths and conversions and a
+ * {@link MethodHandle} for each record's canonical constructor; {@link #of(Class)} returns the
+ * same binder every time. Interfaces are implemented with a proxy holding the bound values, so
+ * their methods cost a little more than a record's accessors.
+ *
+ * Records were added in Java 16, but the library builds for Java 11, so they're read by
+ * reflection, and on earlier versions only interfaces can be bound.
+ */
+//@ThreadSafe
+public final class DumlBinder<T> {
+    private static final ClassValue<DumlBinder<?>> BINDERS = new ClassValue<DumlBinder<?>>() {
+        @Override
+        protected DumlBinder<?> computeValue(Class<?> type) {
+            return new DumlBinder<>(type);
+        }
+    };
+
+    // Takes the binder, the indices of the interface's methods, and an Object[] of the bound values
+    private static final MethodHandle PROXY_FACTORY;
+    static {
+        try {
+            PROXY_FACTORY = MethodHandles.lookup().findStatic(DumlBinder.class, "newProxy",
+                    MethodType.methodType(Object.class, DumlBinder.class, Map.class, Object[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Class.getRecordComponents and the RecordComponent methods used here, and
+    // InvocationHandler.invokeDefault, all from Java 16; null on earlier versions
+    //@Nullable
+    private static final Method GET_RECORD_COMPONENTS;
+    //@Nullable
+    private static final Method GET_COMPONENT_NAME;
+    //@Nullable
+    private static final Method GET_COMPONENT_TYPE;
+    //@Nullable
+    private static final Method GET_COMPONENT_GENERIC_TYPE;
+    //@Nullable
+    private static final Method INVOKE_DEFAULT;
+    static {
+        Method getRecordComponents = null;
+        Method getComponentName = null;
+        Method getComponentType = null;
+        Method getComponentGenericType = null;
+        Method invokeDefault = null;
+        try {
+            getRecordComponents = Class.class.getMethod("getRecordComponents");
+            Class<?> recordComponent = getRecordComponents.getReturnType().getComponentType();
+            getComponentName = recordComponent.getMethod("getName");
+            getComponentType = recordComponent.getMethod("getType");
+            getComponentGenericType = recordComponent.getMethod("getGenericType");
+            invokeDefault = InvocationHandler.class.getMethod("invokeDefault", Object.class, Method.class, Object[].class);
+        } catch (NoSuchMethodException e) {
+            getRecordComponents = null;
+        }
+        GET_RECORD_COMPONENTS = getRecordComponents;
+        GET_COMPONENT_NAME = getComponentName;
+        GET_COMPONENT_TYPE = getComponentType;
+        GET_COMPONENT_GENERIC_TYPE = getComponentGenericType;
+        INVOKE_DEFAULT = invokeDefault;
+    }
+
+    private final Class<T> type;
+    private final Property[] properties;
+    // Takes an Object[] of the bound values
+    private final MethodHandle factory;
+
+    private DumlBinder(Class<T> type) {
+        this.type = type;
+        if (isRecord(type)) {
+            Object[] components = (Object[]) invoke(GET_RECORD_COMPONENTS, type);
+            properties = new Property[components.length];
+            Class<?>[] componentTypes = new Class<?>[components.length];
+            for (int i = 0; i < components.length; i++) {
+                String name = (String) invoke(GET_COMPONENT_NAME, components[i]);
+                componentTypes[i] = (Class<?>) invoke(GET_COMPONENT_TYPE, components[i]);
+                properties[i] = new Property(name, recordKey(type, name), componentTypes[i],
+                        (Type) invoke(GET_COMPONENT_GENERIC_TYPE, components[i]), type);
+            }
+            factory = recordFactory(type, componentTypes);
+        } else if (type.isInterface()) {
+            List<Property> interfaceProperties = new ArrayList<>();
+            Map<Method, Integer> indices = new HashMap<>();
+            for (Method method : type.getMethods()) {
+                if (!Modifier.isAbstract(method.getModifiers())) {
+                    continue;
+                }
+                if (method.getParameterCount() != 0) {
+                    throw new IllegalArgumentException("Can't bind " + type.getName() + "." + method.getName()
+                            + ", which takes parameters");
+                }
+                DumlKey key = method.getAnnotation(DumlKey.class);
+                indices.put(method, interfaceProperties.size());
+                interfaceProperties.add(new Property(method.getName(), key == null ? method.getName() : key.value(),
+                        method.getReturnType(), method.getGenericReturnType(), type));
+            }
+            properties = interfaceProperties.toArray(new Property[0]);
+            factory = MethodHandles.insertArguments(PROXY_FACTORY, 0, this, indices);
+        } else {
+            throw new IllegalArgumentException("Can only bind records and interfaces, not " + type.getName());
+        }
+    }
+
+    /**
+     * Returns the binder for the type, which is created the first time it's asked for.
+     *
+     * @throws IllegalArgumentException if the type isn't a record or interface, or has values of
+     * unsupported types
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> DumlBinder<T> of(Class<T> type) {
+        return (DumlBinder<T>) BINDERS.get(type);
+    }
+
+    public static <T> T bind(DumlNode node, Class<T> type) {
+        return of(type).bind(node);
+    }
+
+    /**
+     * Reads and converts every value from the node.
+     *
+     * @throws IllegalArgumentException if a value can't be converted, or a primitive is missing
+     */
+    public T bind(DumlNode node) {
+        Object[] values = new Object[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            values[i] = properties[i].read(node);
+        }
+        try {
+            return type.cast(factory.invokeExact(values));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Couldn't create " + type.getName(), e);
+        }
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return "DumlBinder[" + type.getName() + "]";
+    }
+
+    private static boolean isRecord(Class<?> type) {
+        return GET_RECORD_COMPONENTS != null && invoke(GET_RECORD_COMPONENTS, type) != null;
+    }
+
+    /**
+     * The key of a record component, from a {@link DumlKey} on it, which the compiler puts on its
+     * accessor.
+     */
+    private static String recordKey(Class<?> type, String name) {
+        try {
+            DumlKey key = type.getDeclaredMethod(name).getAnnotation(DumlKey.class);
+            return key == null ? name : key.value();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Record " + type.getName() + " has no accessor for " + name, e);
+        }
+    }
+
+    // For the Java 16 methods, which only throw unchecked exceptions
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Couldn't call " + method, e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Couldn't call " + method, e);
+        }
+    }
+
+    private static MethodHandle recordFactory(Class<?> type, Class<?>[] componentTypes) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor(componentTypes);
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, componentTypes.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalArgumentException("Can't access the canonical constructor of " + type.getName(), e);
+        }
+    }
+
+    private static Object newProxy(DumlBinder<?> binder, Map<Method, Integer> indices, Object[] values) {
+        return Proxy.newProxyInstance(binder.type.getClassLoader(), new Class<?>[] { binder.type },
+                new BoundValues(binder, indices, values));
+    }
+
+    private static final class BoundValues implements InvocationHandler {
+        private final DumlBinder<?> binder;
+        private final Map<Method, Integer> indices;
+        private final Object[] values;
+
+        private BoundValues(DumlBinder<?> binder, Map<Method, Integer> indices, Object[] values) {
+            this.binder = binder;
+            this.indices = indices;
+            this.values = values;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Integer index = indices.get(method);
+            if (index != null) {
+                return values[index];
+            }
+            if (method.isDefault()) {
+                return invokeDefault(proxy, method, args);
+            }
+            switch (method.getName()) {
+                case "equals":
+                    Object other = args[0];
+                    return other != null && Proxy.isProxyClass(other.getClass())
+                            && Proxy.getInvocationHandler(other) instanceof BoundValues
+                            && ((BoundValues) Proxy.getInvocationHandler(other)).binder == binder
+                            && Arrays.equals(values, ((BoundValues) Proxy.getInvocationHandler(other)).values);
+                case "hashCode":
+                    return Arrays.hashCode(values);
+                case "toString":
+                    StringBuilder string = new StringBuilder(binder.type.getSimpleName()).append('[');
+                    for (int i = 0; i < values.length; i++) {
+                        string.append(i == 0 ? "" : ", ").append(binder.properties[i].name).append('=').append(values[i]);
+                    }
+                    return string.append(']').toString();
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        }
+    }
+
+    private static Object invokeDefault(Object proxy, Method method, Object[] args) throws Throwable {
+        if (INVOKE_DEFAULT != null) {
+            try {
+                return INVOKE_DEFAULT.invoke(null, proxy, method, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+        // Before Java 16, the default method is called as a super call from its own interface
+        Class<?> declaringClass = method.getDeclaringClass();
+        return MethodHandles.privateLookupIn(declaringClass, MethodHandles.lookup())
+                .unreflectSpecial(method, declaringClass)
+                .bindTo(proxy)
+                .invokeWithArguments(args == null ? new Object[0] : args);
+    }
+
+    /**
+     * A value to read from a tree, with the key path found and the conversion chosen up front.
+     */
+    private static final class Property {
+        private final String name;
+        private final DumlPath path;
+        private final boolean primitive;
+        // Exactly one of these is set, unless the value is the node itself
+        //@Nullable
+        private final Converter converter;
+        //@Nullable
+        private final Converter elementConverter;
+        //@Nullable
+        private final Class<?> nestedType;
+
+        Property(String name, String key, Class<?> rawType, Type genericType, Class<?> owner) {
+            this.name = name;
+            this.path = DumlPath.of(key);
+            this.primitive = rawType.isPrimitive();
+            Converter elementConverter = null;
+            if (rawType == List.class) {
+                Type elementType = genericType instanceof ParameterizedType
+                        ? ((ParameterizedType) genericType).getActualTypeArguments()[0]
+                        : null;
+                if (elementType instanceof Class) {
+                    elementConverter = scalarConverter((Class<?>) elementType);
+                }
+                if (elementConverter == null) {
+                    throw unsupported(owner, name, genericType);
+                }
+            }
+            this.elementConverter = elementConverter;
+            this.converter = elementConverter == null ? scalarConverter(rawType) : null;
+            boolean nested = elementConverter == null && converter == null && rawType != DumlNode.class;
+            if (nested && !isRecord(rawType) && !rawType.isInterface()) {
+                throw unsupported(owner, name, genericType);
+            }
+            this.nestedType = nested ? rawType : null;
+        }
+
+        Object read(DumlNode node) {
+            DumlNode valueNode = node.get(path);
+            if (elementConverter != null) {
+                List<String> strings = valueNode == null ? Collections.emptyList() : valueNode.getStrings();
+                Object[] elements = new Object[strings.size()];
+                for (int i = 0; i < elements.length; i++) {
+                    elements[i] = convert(elementConverter, strings.get(i));
+                }
+                return Collections.unmodifiableList(Arrays.asList(elements));
+            }
+            if (converter != null) {
+                String string = valueNode == null ? null : valueNode.getLastString();
+                if (string == null) {
+                    if (primitive) {
+                        throw new IllegalArgumentException("No value at " + path + " for " + name);
+                    }
+                    return null;
+                }
+                return convert(converter, string);
+            }
+            if (nestedType != null) {
+                return valueNode == null ? null : of(nestedType).bind(valueNode);
+            }
+            return valueNode;
+        }
+
+        private Object convert(Converter converter, String string) {
+            try {
+                return converter.convert(string);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Can't convert \"" + string + "\" at " + path + " for " + name, e);
+            }
+        }
+
+        private static IllegalArgumentException unsupported(Class<?> owner, String name, Type type) {
+            return new IllegalArgumentException("Can't bind " + owner.getName() + "." + name + " of type " + type.getTypeName());
+        }
+    }
+
+    private interface Converter {
+        Object convert(String string);
+    }
+
+    //@Nullable
+    private static Converter scalarConverter(Class<?> type) {
+        if (type == String.class) {
+            return string -> string;
+        } else if (type == int.class || type == Integer.class) {
+            return string -> Integer.parseInt(string.trim());
+        } else if (type == long.class || type == Long.class) {
+            return string -> Long.parseLong(string.trim());
+        } else if (type == double.class || type == Double.class) {
+            return string -> Double.parseDouble(string.trim());
+        } else if (type == boolean.class || type == Boolean.class) {
+            return DumlBinder::parseBoolean;
+        } else if (type == Duration.class) {
+            return DumlBinder::parseDuration;
+        }
+        return null;
+    }
+
+    private static Boolean parseBoolean(String string) {
+        String trimmed = string.trim();
+        if (trimmed.equalsIgnoreCase("true")) {
+            return Boolean.TRUE;
+        } else if (trimmed.equalsIgnoreCase("false")) {
+            return Boolean.FALSE;
+        }
+        throw new IllegalArgumentException("Not a boolean: " + string);
+    }
+
+    // Visible for testing
+    static Duration parseDuration(String string) {
+        String trimmed = string.trim();
+        if (trimmed.startsWith("P") || trimmed.startsWith("p") || trimmed.startsWith("-P")) {
+            return Duration.parse(trimmed);
+        }
+        int unitStart = trimmed.length();
+        while (unitStart > 0 && Character.isLetter(trimmed.charAt(unitStart - 1))) {
+            unitStart--;
+        }
+        long amount = Long.parseLong(trimmed.substring(0, unitStart).trim());
+        switch (trimmed.substring(unitStart)) {
+            case "ms":
+                return Duration.ofMillis(amount);
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            case "d":
+                return Duration.ofDays(amount);
+            default:
+                throw new IllegalArgumentException("Not a duration: " + string);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.github.alexlandau.duml;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the results of parsing UTF-8 encoded DUML files with {@link DumlParser#parse(Path, boolean)}.
+ *
+ * Results are stored by file and trimValues setting, along with the file's size and modification
+ * time when it was read, at the full precision the file system keeps; if either has changed, the
+ * file is parsed again. Results are frozen, so
+ * they can be shared by any number of callers. When several threads ask for a file that isn't
+ * cached, it's only parsed once, and the others wait for that result.
+ *
+ * The cache can be limited to a number of entries and to a total weight, which is the sum of the
+ * cached files' sizes in bytes; the least recently used entries are evicted first.
+ */
+//@ThreadSafe
+public final class DumlCache {
+    private final long maximumSize;
+    private final long maximumWeight;
+    private final Loader loader;
+
+    // Guarded by itself; iterates from least to most recently used
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight = 0;
+    private final ConcurrentHashMap<Key, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    // Visible for testing
+    interface Loader {
+        DumlParseResult load(Path dumlFile, boolean trimValues) throws IOException;
+    }
+
+    // Visible for testing
+    DumlCache(long maximumSize, long maximumWeight, Loader loader) {
+        this.maximumSize = maximumSize;
+        this.maximumWeight = maximumWeight;
+        this.loader = loader;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the frozen result of parsing the file, parsing it only if it isn't cached or has
+     * changed since it was cached.
+     */
+    public DumlParseResult get(Path dumlFile, boolean trimValues) throws IOException {
+        Key key = new Key(dumlFile.toAbsolutePath().normalize(), trimValues);
+        while (true) {
+            BasicFileAttributes attributes = Files.readAttributes(dumlFile, BasicFileAttributes.class);
+            long size = attributes.size();
+            FileTime modifiedTime = attributes.lastModifiedTime();
+            synchronized (entries) {
+                Entry entry = entries.get(key);
+                if (entry != null && entry.isVersion(size, modifiedTime)) {
+                    hitCount.increment();
+                    return entry.result;
+                }
+            }
+            missCount.increment();
+
+            CompletableFuture<Entry> newLoad = new CompletableFuture<>();
+            CompletableFuture<Entry> existingLoad = loading.putIfAbsent(key, newLoad);
+            if (existingLoad == null) {
+                return load(key, dumlFile, size, modifiedTime, newLoad).result;
+            }
+            Entry loaded = await(existingLoad);
+            if (loaded.isVersion(size, modifiedTime)) {
+                return loaded.result;
+            }
+            // That load was of an older version of the file, so try again
+        }
+    }
+
+    private Entry load(Key key, Path dumlFile, long size, FileTime modifiedTime, CompletableFuture<Entry> future) throws IOException {
+        long start = System.nanoTime();
+        try {
+            Entry entry = new Entry(size, modifiedTime, loader.load(dumlFile, key.trimValues).freeze());
+            totalLoadTime.add(System.nanoTime() - start);
+            loadSuccessCount.increment();
+            put(key, entry);
+            future.complete(entry);
+            return entry;
+        } catch (IOException | RuntimeException | Error e) {
+            totalLoadTime.add(System.nanoTime() - start);
+            loadFailureCount.increment();
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    private static Entry await(CompletableFuture<Entry> load) throws IOException {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for another thread to parse DUML");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    private void put(Key key, Entry entry) {
+        synchronized (entries) {
+            Entry replaced = entries.put(key, entry);
+            if (replaced != null) {
+                totalWeight -= replaced.size;
+            }
+            totalWeight += entry.size;
+            Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+            while (leastRecentlyUsed.hasNext() && (entries.size() > maximumSize || totalWeight > maximumWeight)) {
+                totalWeight -= leastRecentlyUsed.next().size;
+                leastRecentlyUsed.remove();
+                evictionCount.increment();
+            }
+        }
+    }
+
+    public void invalidate(Path dumlFile) {
+        Path path = dumlFile.toAbsolutePath().normalize();
+        synchronized (entries) {
+            for (boolean trimValues : new boolean[] { false, true }) {
+                Entry removed = entries.remove(new Key(path, trimValues));
+                if (removed != null) {
+                    totalWeight -= removed.size;
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            totalWeight = 0;
+        }
+    }
+
+    /**
+     * The number of cached results.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(), loadFailureCount.sum(),
+                totalLoadTime.sum(), evictionCount.sum());
+    }
+
+    @Override
+    public String toString() {
+        return "DumlCache[" + size() + " entries, " + stats() + "]";
+    }
+
+    public static final class Builder {
+        private long maximumSize = Long.MAX_VALUE;
+        private long maximumWeight = Long.MAX_VALUE;
+
+        private Builder() {
+            // Use DumlCache.builder()
+        }
+
+        /**
+         * Limits the number of cached results.
+         */
+        public Builder maximumSize(long maximumSize) {
+            if (maximumSize < 0) {
+                throw new IllegalArgumentException("Maximum size can't be negative: " + maximumSize);
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Limits the total size in bytes of the files whose results are cached.
+         */
+        public Builder maximumWeight(long maximumWeight) {
+            if (maximumWeight < 0) {
+                throw new IllegalArgumentException("Maximum weight can't be negative: " + maximumWeight);
+            }
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        public DumlCache build() {
+            return new DumlCache(maximumSize, maximumWeight, DumlParser::parse);
+        }
+    }
+
+    /**
+     * Counts of what the cache has done since it was created. A miss that waited for another
+     * thread's load is counted as a miss, but not as a load.
+     */
+    public static final class Stats {
+        private final long hitCount;
+        private final long missCount;
+        private final long loadSuccessCount;
+        private final long loadFailureCount;
+        private final long totalLoadTimeNanos;
+        private final long evictionCount;
+
+        private Stats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+                      long totalLoadTimeNanos, long evictionCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.loadSuccessCount = loadSuccessCount;
+            this.loadFailureCount = loadFailureCount;
+            this.totalLoadTimeNanos = totalLoadTimeNanos;
+            this.evictionCount = evictionCount;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public long getLoadSuccessCount() {
+            return loadSuccessCount;
+        }
+
+        public long getLoadFailureCount() {
+            return loadFailureCount;
+        }
+
+        /**
+         * The total time spent parsing files, including failed attempts.
+         */
+        public long getTotalLoadTimeNanos() {
+            return totalLoadTimeNanos;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        /**
+         * The fraction of requests that were hits, or 1 if there haven't been any requests.
+         */
+        public double getHitRate() {
+            long requestCount = hitCount + missCount;
+            return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+        }
+
+        @Override
+        public String toString() {
+            return "hits: " + hitCount + ", misses: " + missCount + ", loads: " + loadSuccessCount
+                    + ", load failures: " + loadFailureCount + ", load time: " + totalLoadTimeNanos
+                    + "ns, evictions: " + evictionCount;
+        }
+    }
+
+    private static final class Key {
+        private final Path path;
+        private final boolean trimValues;
+
+        private Key(Path path, boolean trimValues) {
+            this.path = path;
+            this.trimValues = trimValues;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return trimValues == key.trimValues && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, trimValues);
+        }
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final FileTime modifiedTime;
+        private final DumlParseResult result;
+
+        private Entry(long size, FileTime modifiedTime, DumlParseResult result) {
+            this.size = size;
+            this.modifiedTime = modifiedTime;
+            this.result = result;
+        }
+
+        boolean isVersion(long size, FileTime modifiedTime) {
+            return this.size == size && this.modifiedTime.equals(modifiedTime);
+        }
+    }
+}
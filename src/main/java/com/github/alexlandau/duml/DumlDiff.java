@@ -0,0 +1,226 @@
+package com.github.alexlandau.duml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The differences between two DUML trees, as the key paths whose strings were added, removed, or
+ * changed. Every change is to a strings node: when an object node is added or removed, each
+ * strings node under it is reported, and when a key's strings are replaced by an object or the
+ * other way around, that's reported as a removal and additions.
+ *
+ * Only subtrees that are the same node in both trees are skipped, so diffing successive trees
+ * that share their unchanged nodes takes time proportional to the changes. Otherwise every node
+ * is compared. Frozen nodes remember their hash codes, so a frozen subtree whose hash code
+ * differs is known to have changed without comparing it; one whose hash code matches is compared
+ * node by node before it's taken as unchanged, which costs as much as diffing it but doesn't
+ * track key paths. A matching hash code alone is never taken as proof.
+ */
+public final class DumlDiff {
+    public enum ChangeType {
+        ADDED,
+        REMOVED,
+        CHANGED,
+    }
+
+    private final List<Change> changes;
+    private final int comparedNodeCount;
+
+    private DumlDiff(List<Change> changes, int comparedNodeCount) {
+        this.changes = changes;
+        this.comparedNodeCount = comparedNodeCount;
+    }
+
+    public static DumlDiff between(DumlNode before, DumlNode after) {
+        Differ differ = new Differ();
+        differ.diff(before, after);
+        return new DumlDiff(Collections.unmodifiableList(differ.changes), differ.comparedNodeCount);
+    }
+
+    /**
+     * The changes, in the order of the keys in the earlier tree, followed by keys that only
+     * appear in the later one.
+     */
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    // Visible for testing
+    int getComparedNodeCount() {
+        return comparedNodeCount;
+    }
+
+    @Override
+    public String toString() {
+        return changes.toString();
+    }
+
+    public static final class Change {
+        private final ChangeType type;
+        private final DumlPath path;
+        private final List<String> before;
+        private final List<String> after;
+
+        private Change(ChangeType type, DumlPath path, List<String> before, List<String> after) {
+            this.type = type;
+            this.path = path;
+            this.before = before;
+            this.after = after;
+        }
+
+        public ChangeType getType() {
+            return type;
+        }
+
+        public DumlPath getPath() {
+            return path;
+        }
+
+        /**
+         * The strings at the path in the earlier tree, or an empty list if they were added. The list
+         * can't be modified, and doesn't change if the tree does.
+         */
+        public List<String> getBefore() {
+            return before;
+        }
+
+        /**
+         * The strings at the path in the later tree, or an empty list if they were removed. The list
+         * can't be modified, and doesn't change if the tree does.
+         */
+        public List<String> getAfter() {
+            return after;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Change change = (Change) o;
+            return type == change.type &&
+                    path.equals(change.path) &&
+                    before.equals(change.before) &&
+                    after.equals(change.after);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, path, before, after);
+        }
+
+        @Override
+        public String toString() {
+            switch (type) {
+                case ADDED:
+                    return "+" + path + " " + after;
+                case REMOVED:
+                    return "-" + path + " " + before;
+                default:
+                    return "~" + path + " " + before + " -> " + after;
+            }
+        }
+    }
+
+    private static final class Differ {
+        private final List<Change> changes = new ArrayList<>();
+        private final List<String> location = new ArrayList<>();
+        private int comparedNodeCount = 0;
+
+        void diff(DumlNode before, DumlNode after) {
+            comparedNodeCount++;
+            if (before == after) {
+                return;
+            }
+            if (before.isFrozen() && after.isFrozen() && equalFrozen(before, after)) {
+                return;
+            }
+            if (before.isStrings() && after.isStrings()) {
+                if (!before.getStrings().equals(after.getStrings())) {
+                    changes.add(new Change(ChangeType.CHANGED, currentPath(), snapshot(before), snapshot(after)));
+                }
+            } else if (before.isObject() && after.isObject()) {
+                Map<String, DumlNode> afterMap = after.getMap();
+                for (Map.Entry<String, DumlNode> entry : before.getMap().entrySet()) {
+                    location.add(entry.getKey());
+                    DumlNode afterChild = afterMap.get(entry.getKey());
+                    if (afterChild == null) {
+                        addAll(ChangeType.REMOVED, entry.getValue());
+                    } else {
+                        diff(entry.getValue(), afterChild);
+                    }
+                    location.remove(location.size() - 1);
+                }
+                Map<String, DumlNode> beforeMap = before.getMap();
+                for (Map.Entry<String, DumlNode> entry : afterMap.entrySet()) {
+                    if (!beforeMap.containsKey(entry.getKey())) {
+                        location.add(entry.getKey());
+                        addAll(ChangeType.ADDED, entry.getValue());
+                        location.remove(location.size() - 1);
+                    }
+                }
+            } else {
+                addAll(ChangeType.REMOVED, before);
+                addAll(ChangeType.ADDED, after);
+            }
+        }
+
+        /**
+         * The same as equals on two frozen nodes, but counts the nodes it compares under them.
+         */
+        private boolean equalFrozen(DumlNode before, DumlNode after) {
+            if (before.hashCode() != after.hashCode() || before.isStrings() != after.isStrings()) {
+                return false;
+            }
+            if (before.isStrings()) {
+                return before.getStrings().equals(after.getStrings());
+            }
+            Map<String, DumlNode> afterMap = after.getMap();
+            if (before.getMap().size() != afterMap.size()) {
+                return false;
+            }
+            for (Map.Entry<String, DumlNode> entry : before.getMap().entrySet()) {
+                DumlNode afterChild = afterMap.get(entry.getKey());
+                if (afterChild == null) {
+                    return false;
+                }
+                comparedNodeCount++;
+                if (entry.getValue() != afterChild && !equalFrozen(entry.getValue(), afterChild)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void addAll(ChangeType type, DumlNode node) {
+            if (node.isStrings()) {
+                List<String> strings = snapshot(node);
+                changes.add(type == ChangeType.ADDED
+                        ? new Change(type, currentPath(), Collections.emptyList(), strings)
+                        : new Change(type, currentPath(), strings, Collections.emptyList()));
+                return;
+            }
+            for (Map.Entry<String, DumlNode> entry : node.getMap().entrySet()) {
+                location.add(entry.getKey());
+                addAll(type, entry.getValue());
+                location.remove(location.size() - 1);
+            }
+        }
+
+        // Changes keep their own read-only copies, unless the strings are already frozen
+        private static List<String> snapshot(DumlNode node) {
+            List<String> strings = node.getStrings();
+            return node.isFrozen() ? strings : Collections.unmodifiableList(new ArrayList<>(strings));
+        }
+
+        private DumlPath currentPath() {
+            return DumlPath.ofParts(location.toArray(new String[0]));
+        }
+    }
+}
@@ -0,0 +1,581 @@
+package com.github.alexlandau.duml;
+
+import java.util.*;
+
+/**
+ * A DUML document kept as a list of lines, for re-parsing after small edits.
+ *
+ * Entries under different keys never affect each other, unless one's key is a prefix of
+ * another's, so the lines are grouped by key, and after an edit only the smallest subtrees
+ * containing the keys of the removed or added lines are rebuilt. A subtree is rebuilt as a
+ * whole when it has entries directly at its own key, since those interact with every entry under
+ * it; otherwise each of its children is considered separately. The trees under every other key
+ * are reused as-is in the new result, so editing one entry deep in a document under a single
+ * top-level key only re-parses that entry's siblings.
+ *
+ * Each group of lines is kept in document order, and the lines are kept in a balanced tree that
+ * finds a line's position in logarithmic time, so no edit looks at lines outside the subtrees it
+ * rebuilds. The other work on each edit is copying the object nodes on the paths down to those
+ * subtrees, which takes time proportional to their numbers of keys.
+ *
+ * Each result gets a new root node, and new object nodes on the paths down to the rebuilt
+ * subtrees, so earlier results are unaffected by later edits, but unchanged subtrees are shared
+ * between them and should not be modified.
+ */
+//@NotThreadSafe
+public final class DumlDocument {
+    private final boolean trimValues;
+    private final LineTree lines = new LineTree();
+    private final Group rootGroup = new Group(null, null, lines);
+    // The lines whose entries replaced nodes in the current result
+    private final TreeSet<Line> lostNodeLines = new TreeSet<>(lines);
+    private DumlParseResult result = new DumlParseResult(DumlNode.emptyObject(), Collections.emptyList());
+    private int walkCount = 0;
+    private int rebuiltLineCount = 0;
+
+    private DumlDocument(boolean trimValues) {
+        this.trimValues = trimValues;
+    }
+
+    public static DumlDocument parse(String dumlText, boolean trimValues) {
+        DumlDocument document = new DumlDocument(trimValues);
+        document.replaceLines(0, 0, splitLines(dumlText));
+        return document;
+    }
+
+    /**
+     * The result of parsing the document as it is now. This is equal to the result of
+     * {@link DumlParser#parse(String, boolean)} on the whole text.
+     */
+    public DumlParseResult getResult() {
+        return result;
+    }
+
+    public int getLineCount() {
+        return lines.size();
+    }
+
+    public String getLine(int index) {
+        if (index < 0 || index >= lines.size()) {
+            throw new IndexOutOfBoundsException("Can't get line " + index + " of " + lines.size());
+        }
+        return lines.get(index).text;
+    }
+
+    /**
+     * Replaces the lines from fromIndex, inclusive, to toIndex, exclusive, with the given lines,
+     * which must not contain line breaks. Line indices start at 0.
+     *
+     * @return the updated result
+     */
+    public DumlParseResult replaceLines(int fromIndex, int toIndex, List<String> newLines) {
+        if (fromIndex < 0 || toIndex > lines.size() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Can't replace lines " + fromIndex + " to " + toIndex + " of " + lines.size());
+        }
+        List<Line> addedLines = parseLines(newLines);
+
+        // Each edited line's subtree is found before removed lines are taken out, and after
+        // added lines are put in, since either may change which subtree it is. Lines are taken
+        // out of their groups while they still have positions to be found by.
+        List<Group> editedSubtrees = new ArrayList<>();
+        boolean lostNodesChanged = false;
+        List<Line> removedLines = lines.range(fromIndex, toIndex);
+        for (Line removedLine : removedLines) {
+            if (removedLine.group != null) {
+                editedSubtrees.add(removedLine.group.subtree());
+            }
+        }
+        for (Line removedLine : removedLines) {
+            if (removedLine.group != null) {
+                removedLine.group.remove(removedLine);
+            }
+            if (removedLine.lostNode != null) {
+                lostNodeLines.remove(removedLine);
+                lostNodesChanged = true;
+            }
+        }
+        for (Line removedLine : removedLines) {
+            if (removedLine.group != null) {
+                removedLine.group.detachIfEmpty();
+            }
+        }
+        lines.replace(fromIndex, toIndex, addedLines);
+
+        for (Line addedLine : addedLines) {
+            if (addedLine.key != null) {
+                addedLine.group = rootGroup.descendant(addedLine.key);
+                addedLine.group.add(addedLine);
+            }
+        }
+        for (Line addedLine : addedLines) {
+            if (addedLine.group != null) {
+                editedSubtrees.add(addedLine.group.subtree());
+            }
+        }
+
+        if (!editedSubtrees.isEmpty()) {
+            rebuild(editedSubtrees, lostNodesChanged);
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the document's text. Only the lines between the unchanged lines at the start and
+     * end of the document are parsed again.
+     *
+     * @return the updated result
+     */
+    public DumlParseResult update(String newDumlText) {
+        List<String> newLines = splitLines(newDumlText);
+        int commonPrefix = 0;
+        int maxCommon = Math.min(lines.size(), newLines.size());
+        while (commonPrefix < maxCommon && lines.get(commonPrefix).text.equals(newLines.get(commonPrefix))) {
+            commonPrefix++;
+        }
+        int commonSuffix = 0;
+        while (commonSuffix < maxCommon - commonPrefix
+                && lines.get(lines.size() - 1 - commonSuffix).text.equals(newLines.get(newLines.size() - 1 - commonSuffix))) {
+            commonSuffix++;
+        }
+        return replaceLines(commonPrefix, lines.size() - commonSuffix,
+                newLines.subList(commonPrefix, newLines.size() - commonSuffix));
+    }
+
+    /**
+     * Splits text into lines the same way the parser does: at each \n, \r, or \r\n.
+     */
+    static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int lineStart = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                lines.add(text.substring(lineStart, i));
+                if (c == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                lineStart = i + 1;
+            }
+        }
+        lines.add(text.substring(lineStart));
+        return lines;
+    }
+
+    private List<Line> parseLines(List<String> newLines) {
+        List<Line> parsedLines = new ArrayList<>(newLines.size());
+        StringBuilder text = new StringBuilder();
+        for (String newLine : newLines) {
+            if (newLine.indexOf('\n') >= 0 || newLine.indexOf('\r') >= 0) {
+                throw new IllegalArgumentException("Lines can't contain line breaks: " + newLine);
+            }
+            if (!parsedLines.isEmpty()) {
+                text.append('\n');
+            }
+            text.append(newLine);
+            parsedLines.add(new Line(newLine));
+        }
+        DumlParser.parse(text.toString(), trimValues, (key, value, lineNumber) -> {
+            Line line = parsedLines.get((int) lineNumber - 1);
+            line.key = key.toString();
+            line.value = value.toString();
+        });
+        return parsedLines;
+    }
+
+    private void rebuild(List<Group> editedSubtrees, boolean lostNodesChanged) {
+        walkCount++;
+        for (Group subtree : editedSubtrees) {
+            subtree.rebuiltWalk = walkCount;
+        }
+        // Mark the groups above the rebuilt subtrees, which get new object nodes, and the
+        // children of each whose lines changed
+        for (Group subtree : editedSubtrees) {
+            for (Group child = subtree; child.parent != null && child.orderWalk != walkCount; child = child.parent) {
+                child.orderWalk = walkCount;
+                Group parent = child.parent;
+                parent.pathWalk = walkCount;
+                if (parent.childOrderWalk != walkCount) {
+                    parent.childOrderWalk = walkCount;
+                    parent.changedChildren.clear();
+                }
+                parent.changedChildren.add(child);
+            }
+        }
+
+        // Replay the lines of each rebuilt subtree that's still in the document and isn't
+        // inside another one
+        DumlParser parser = new DumlParser();
+        rebuiltLineCount = 0;
+        for (Group subtree : new LinkedHashSet<>(editedSubtrees)) {
+            if (subtree.lines.isEmpty() || subtree.isInsideRebuiltSubtree(walkCount)) {
+                continue;
+            }
+            for (Line line : subtree.lines) {
+                rebuiltLineCount++;
+                if (line.lostNode != null) {
+                    lostNodeLines.remove(line);
+                    lostNodesChanged = true;
+                }
+                int lostNodeCount = parser.getLostNodeCount();
+                parser.processKeyAndValue(line.key, line.value);
+                line.lostNode = parser.getLostNodeCount() > lostNodeCount
+                        ? parser.getResult().getLostNodes().get(lostNodeCount)
+                        : null;
+                if (line.lostNode != null) {
+                    lostNodeLines.add(line);
+                    lostNodesChanged = true;
+                }
+            }
+        }
+
+        List<LostNode> lostNodes = result.getLostNodes();
+        if (lostNodesChanged) {
+            lostNodes = new ArrayList<>(lostNodeLines.size());
+            for (Line line : lostNodeLines) {
+                lostNodes.add(line.lostNode);
+            }
+        }
+        DumlNode rebuiltRoot = parser.getResult().getDuml();
+        DumlNode root = rootGroup.rebuiltWalk == walkCount
+                ? rebuiltRoot
+                : rebuildPath(rootGroup, result.getDuml(), rebuiltRoot);
+        result = new DumlParseResult(root, lostNodes);
+    }
+
+    /**
+     * Creates a new object node for the group, taking each child from the rebuilt tree if it was
+     * rebuilt, and otherwise from the previous result. Children are in the order of their first
+     * lines; those whose lines didn't change keep their order from the previous result, and the
+     * others are put in among them.
+     */
+    private DumlNode rebuildPath(Group group, DumlNode previous, DumlNode rebuiltRoot) {
+        // A new group may have a key that was previously a strings node
+        Map<String, DumlNode> previousMap = previous == null || !previous.isObject()
+                ? Collections.emptyMap()
+                : previous.getMap();
+        List<Group> unchangedChildren = new ArrayList<>(previousMap.size());
+        for (String key : previousMap.keySet()) {
+            Group child = group.children.get(key);
+            if (child != null && child.orderWalk != walkCount) {
+                unchangedChildren.add(child);
+            }
+        }
+        List<Group> changedChildren = new ArrayList<>();
+        for (Group child : group.changedChildren) {
+            // Groups that lost all their lines are no longer children
+            if (group.children.get(child.key) == child) {
+                changedChildren.add(child);
+            }
+        }
+        Comparator<Group> byFirstLine = (a, b) -> lines.compare(a.lines.first(), b.lines.first());
+        changedChildren.sort(byFirstLine);
+
+        DumlNode node = DumlNode.emptyObject();
+        int nextUnchanged = 0;
+        for (Group changedChild : changedChildren) {
+            int searchResult = Collections.binarySearch(
+                    unchangedChildren.subList(nextUnchanged, unchangedChildren.size()), changedChild, byFirstLine);
+            int insertionPoint = nextUnchanged - searchResult - 1;
+            for (Group child : unchangedChildren.subList(nextUnchanged, insertionPoint)) {
+                node.getMap().put(child.key, previousMap.get(child.key));
+            }
+            nextUnchanged = insertionPoint;
+            DumlNode childNode = changedChild.rebuiltWalk == walkCount
+                    ? rebuiltRoot.get(changedChild.path())
+                    : rebuildPath(changedChild, previousMap.get(changedChild.key), rebuiltRoot);
+            node.getMap().put(changedChild.key, childNode);
+        }
+        for (Group child : unchangedChildren.subList(nextUnchanged, unchangedChildren.size())) {
+            node.getMap().put(child.key, previousMap.get(child.key));
+        }
+        return node;
+    }
+
+    // Visible for testing
+    int getRebuiltLineCount() {
+        return rebuiltLineCount;
+    }
+
+    @Override
+    public String toString() {
+        return "DumlDocument[" + lines.size() + " lines: " + result + "]";
+    }
+
+    private static final class Line {
+        private final String text;
+        // The rest are only set for lines with entries
+        private String key;
+        private String value;
+        private Group group;
+        private LostNode lostNode;
+
+        // The line's node in the LineTree
+        private Line left;
+        private Line right;
+        private Line parent;
+        private int size;
+        private int priority;
+
+        private Line(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * The lines in document order, as a treap keyed by position: each line is a node, whose
+     * subtree's size gives its position. Lines can be found by index, compared by position, and
+     * replaced in runs, each in logarithmic time, without moving the lines around them.
+     */
+    private static final class LineTree implements Comparator<Line> {
+        private final Random random = new Random();
+        //@Nullable: null when there are no lines
+        private Line root;
+
+        int size() {
+            return size(root);
+        }
+
+        Line get(int index) {
+            Line node = root;
+            while (true) {
+                int leftSize = size(node.left);
+                if (index < leftSize) {
+                    node = node.left;
+                } else if (index == leftSize) {
+                    return node;
+                } else {
+                    index -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        int indexOf(Line line) {
+            int index = size(line.left);
+            for (Line node = line; node.parent != null; node = node.parent) {
+                if (node == node.parent.right) {
+                    index += size(node.parent.left) + 1;
+                }
+            }
+            return index;
+        }
+
+        @Override
+        public int compare(Line a, Line b) {
+            return Integer.compare(indexOf(a), indexOf(b));
+        }
+
+        /**
+         * The lines from fromIndex, inclusive, to toIndex, exclusive.
+         */
+        List<Line> range(int fromIndex, int toIndex) {
+            List<Line> range = new ArrayList<>(toIndex - fromIndex);
+            if (fromIndex < toIndex) {
+                Line line = get(fromIndex);
+                while (range.size() < toIndex - fromIndex) {
+                    range.add(line);
+                    line = next(line);
+                }
+            }
+            return range;
+        }
+
+        /**
+         * Replaces the lines from fromIndex, inclusive, to toIndex, exclusive, with new ones.
+         */
+        void replace(int fromIndex, int toIndex, List<Line> newLines) {
+            Line added = null;
+            for (Line line : newLines) {
+                line.size = 1;
+                line.priority = random.nextInt();
+                added = merge(added, line);
+            }
+            Line[] beforeAndRest = split(root, fromIndex);
+            Line[] removedAndAfter = split(beforeAndRest[1], toIndex - fromIndex);
+            root = merge(merge(beforeAndRest[0], added), removedAndAfter[1]);
+            if (root != null) {
+                root.parent = null;
+            }
+        }
+
+        private static Line next(Line line) {
+            if (line.right != null) {
+                Line next = line.right;
+                while (next.left != null) {
+                    next = next.left;
+                }
+                return next;
+            }
+            while (line.parent != null && line == line.parent.right) {
+                line = line.parent;
+            }
+            return line.parent;
+        }
+
+        /**
+         * Splits off the first count lines, returning those and the rest.
+         */
+        private static Line[] split(Line node, int count) {
+            if (node == null) {
+                return new Line[2];
+            }
+            Line[] parts;
+            if (count <= size(node.left)) {
+                parts = split(node.left, count);
+                setLeft(node, parts[1]);
+                parts[1] = node;
+            } else {
+                parts = split(node.right, count - size(node.left) - 1);
+                setRight(node, parts[0]);
+                parts[0] = node;
+            }
+            node.parent = null;
+            return parts;
+        }
+
+        private static Line merge(Line first, Line second) {
+            if (first == null) {
+                return second;
+            }
+            if (second == null) {
+                return first;
+            }
+            if (first.priority > second.priority) {
+                setRight(first, merge(first.right, second));
+                return first;
+            }
+            setLeft(second, merge(first, second.left));
+            return second;
+        }
+
+        private static void setLeft(Line node, Line left) {
+            node.left = left;
+            if (left != null) {
+                left.parent = node;
+            }
+            node.size = 1 + size(left) + size(node.right);
+        }
+
+        private static void setRight(Line node, Line right) {
+            node.right = right;
+            if (right != null) {
+                right.parent = node;
+            }
+            node.size = 1 + size(node.left) + size(right);
+        }
+
+        private static int size(Line node) {
+            return node == null ? 0 : node.size;
+        }
+    }
+
+    /**
+     * The lines whose keys start with the same parts, in document order. Each line belongs to the
+     * group of its whole key, and is also kept in all the groups above it.
+     */
+    private static final class Group {
+        //@Nullable: null for the root
+        private final Group parent;
+        //@Nullable: null for the root
+        private final String key;
+        private final Map<String, Group> children = new HashMap<>();
+        private final TreeSet<Line> lines;
+        // Lines whose whole key is this group's
+        private int directLineCount = 0;
+        //@Nullable: computed when first needed
+        private DumlPath path;
+
+        // Marks for the current rebuild, compared to walkCount
+        private int rebuiltWalk = 0;
+        private int pathWalk = 0;
+        private int orderWalk = 0;
+        private int childOrderWalk = 0;
+        private final List<Group> changedChildren = new ArrayList<>();
+
+        private Group(Group parent, String key, Comparator<? super Line> documentOrder) {
+            this.parent = parent;
+            this.key = key;
+            this.lines = new TreeSet<>(documentOrder);
+        }
+
+        /**
+         * Finds or creates the group of the key, which is this group for a key with no parts.
+         */
+        Group descendant(String key) {
+            int partCount = DumlPath.countParts(key);
+            String[] parts = new String[partCount];
+            DumlPath.split(key, partCount, parts, 0);
+            Group group = this;
+            for (String part : parts) {
+                Group parentGroup = group;
+                group = parentGroup.children.computeIfAbsent(part,
+                        childKey -> new Group(parentGroup, childKey, parentGroup.lines.comparator()));
+            }
+            return group;
+        }
+
+        /**
+         * Adds a line of this group, which must already be in the document.
+         */
+        void add(Line line) {
+            directLineCount++;
+            for (Group group = this; group != null; group = group.parent) {
+                group.lines.add(line);
+            }
+        }
+
+        /**
+         * Removes a line of this group, which must still be in the document.
+         */
+        void remove(Line line) {
+            directLineCount--;
+            for (Group group = this; group != null; group = group.parent) {
+                group.lines.remove(line);
+            }
+        }
+
+        void detachIfEmpty() {
+            for (Group group = this; group.parent != null && group.lines.isEmpty(); group = group.parent) {
+                group.parent.children.remove(group.key, group);
+            }
+        }
+
+        /**
+         * The subtree to rebuild when a line of this group changes: the highest group above it
+         * with lines directly at its key, or else this group.
+         */
+        Group subtree() {
+            Group subtree = this;
+            for (Group group = parent; group != null; group = group.parent) {
+                if (group.directLineCount > 0) {
+                    subtree = group;
+                }
+            }
+            return subtree;
+        }
+
+        boolean isInsideRebuiltSubtree(int walk) {
+            for (Group group = parent; group != null; group = group.parent) {
+                if (group.rebuiltWalk == walk) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        DumlPath path() {
+            if (path == null) {
+                int depth = 0;
+                for (Group group = this; group.parent != null; group = group.parent) {
+                    depth++;
+                }
+                String[] parts = new String[depth];
+                for (Group group = this; group.parent != null; group = group.parent) {
+                    parts[--depth] = group.key;
+                }
+                path = DumlPath.ofParts(parts);
+            }
+            return path;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.alexlandau.duml;
+
+/**
+ * Receives the lines of a DUML document as they are parsed, as an alternative to building a
+ * {@link DumlNode} tree.
+ *
+ * The {@link CharSequence}s passed to these methods are views into the parser's buffers, and are
+ * only valid until the method returns. Call {@link CharSequence#toString()} to keep a copy.
+ */
+public interface DumlHandler {
+    /**
+     * Called for every line with a key. The key is the full dotted key, not yet split into its
+     * parts. Lines with no value have an empty value. Line numbers start at 1.
+     */
+    void onEntry(CharSequence key, CharSequence value, long line);
+
+    /**
+     * Called for every comment line, with the text following the '#'.
+     */
+    default void onComment(CharSequence comment, long line) {
+        // Comments are ignored by default
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.alexlandau.duml;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded table of strings that can be shared by any number of parses, so that key parts and
+ * values repeated across documents are only kept in memory once. Set one with
+ * {@link DumlParserOptions.Builder#interner(DumlInterner)}.
+ *
+ * Each string has one slot, chosen by the hash of its characters, and a new string replaces
+ * whatever was in its slot; so the table never holds more than its capacity, and strings that
+ * collide are sometimes created more than once. Strings longer than {@link #MAX_LENGTH} aren't
+ * kept, as they're unlikely to repeat.
+ */
+//@ThreadSafe
+public final class DumlInterner {
+    public static final int MAX_LENGTH = 256;
+
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+
+    private DumlInterner(int capacity) {
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Creates an interner with a slot for each of the given number of strings, rounded up to a
+     * power of two.
+     */
+    public static DumlInterner withCapacity(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        return new DumlInterner(capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+    }
+
+    /**
+     * Returns a string equal to the given characters, reusing one from the table if possible.
+     */
+    public String intern(CharSequence chars) {
+        return intern(chars, 0, chars.length());
+    }
+
+    /**
+     * Returns a string equal to chars[start, end), reusing one from the table if possible. A new
+     * string is only created if the table doesn't have one.
+     */
+    String intern(CharSequence chars, int start, int end) {
+        if (end - start > MAX_LENGTH) {
+            return StringTable.copy(chars, start, end, null);
+        }
+        int hash = StringTable.hash(chars, start, end);
+        int slot = StringTable.spread(hash) & mask;
+        String existing = slots.getPlain(slot);
+        if (existing != null && existing.hashCode() == hash && StringTable.matches(existing, chars, start, end)) {
+            return existing;
+        }
+        String newString = StringTable.copy(chars, start, end, null);
+        // Strings are safe to publish without synchronization; racing writers just lose a slot
+        slots.setPlain(slot, newString);
+        return newString;
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    @Override
+    public String toString() {
+        return "DumlInterner[capacity=" + slots.length() + "]";
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.alexlandau.duml;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Sets the key that a record component or interface method is bound to by {@link DumlBinder},
+ * instead of its name. The key may have several parts separated by dots. On a record component,
+ * it's read from the component's accessor, so a record that declares its own accessor should put
+ * it there instead.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface DumlKey {
+    String value();
+}
@@ -0,0 +1,46 @@
+package com.github.alexlandau.duml;
+
+/**
+ * Thrown when a document exceeds one of the limits set in {@link DumlParserOptions}. The parse
+ * stops at the line that exceeded it, so the rest of the input is never read.
+ */
+public final class DumlLimitException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public enum Limit {
+        LINE_LENGTH,
+        KEY_DEPTH,
+        TOTAL_NODES,
+        VALUES_PER_KEY,
+        RETAINED_CHARS,
+    }
+
+    private final Limit limit;
+    private final long maximum;
+    private final long lineNumber;
+
+    DumlLimitException(Limit limit, long maximum, long lineNumber) {
+        super("Line " + lineNumber + " exceeds the " + limit + " limit of " + maximum);
+        this.limit = limit;
+        this.maximum = maximum;
+        this.lineNumber = lineNumber;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * The value the limit was set to.
+     */
+    public long getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * The line that exceeded the limit, starting at 1.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+}
@@ -2,6 +2,14 @@ package com.github.alexlandau.duml;
 
 import java.util.*;
 
+/**
+ * A node in a parsed DUML tree: either an object node mapping keys to child nodes, or a strings
+ * node holding the values given for a key.
+ *
+ * Nodes built by {@link DumlParser} are mutable and not thread-safe. Nodes returned by
+ * {@link #freeze()} are immutable and can be read from any number of threads; see
+ * {@link DumlSnapshot} for sharing a reloadable result.
+ */
 //@NotThreadSafe
 public abstract class DumlNode {
     private DumlNode() {
@@ -21,11 +29,25 @@ public abstract class DumlNode {
         return new DumlStringsNode(strings);
     }
 
+    // Wraps the map itself, for contents that are built on demand
+    static DumlObjectNode objectOf(Map<String, DumlNode> contents) {
+        return new DumlObjectNode(contents);
+    }
+    // For building frozen trees directly; the arrays must not be modified afterwards
+    static DumlObjectNode frozenObject(String[] keys, DumlNode[] values) {
+        return new DumlObjectNode(new FrozenMap(keys, values));
+    }
+    static DumlStringsNode frozenStrings(String[] strings) {
+        return new DumlStringsNode(FrozenStringList.wrap(strings));
+    }
+
     public abstract boolean isObject();
     public abstract boolean isStrings();
 
     //@Nullable
     public abstract DumlNode get(String key, String... moreKeys);
+    //@Nullable
+    public abstract DumlNode get(DumlPath path);
     public abstract List<String> getStrings();
     public List<String> getStrings(String key, String... moreKeys) {
         DumlNode nodeAtKey = get(key, moreKeys);
@@ -34,6 +56,13 @@ public abstract class DumlNode {
         }
         return nodeAtKey.getStrings();
     }
+    public List<String> getStrings(DumlPath path) {
+        DumlNode nodeAtPath = get(path);
+        if (nodeAtPath == null) {
+            return Collections.emptyList();
+        }
+        return nodeAtPath.getStrings();
+    }
     //@Nullable
     public abstract String getLastString();
     //@Nullable
@@ -44,9 +73,31 @@ public abstract class DumlNode {
         }
         return nodeAtKey.getLastString();
     }
+    //@Nullable
+    public String getLastString(DumlPath path) {
+        DumlNode nodeAtPath = get(path);
+        if (nodeAtPath == null) {
+            return null;
+        }
+        return nodeAtPath.getLastString();
+    }
 
     public abstract Map<String, DumlNode> getMap();
 
+    /**
+     * Returns an immutable copy of this node and everything under it, or this node itself if it's
+     * already frozen. Frozen nodes store their contents in compact, exact-size arrays, and can be
+     * shared freely between threads. A frozen node is equal to the node it was copied from.
+     *
+     * A frozen node's contents are held in final fields and arrays that are never written after
+     * construction, so they are safely published to other threads even without synchronization.
+     * The one exception is the hash code, which is cached in a plain field when first computed;
+     * like {@link String#hashCode()}, threads may race to compute it, but always compute the same
+     * value, so a thread sees either that value or zero and recomputes it.
+     */
+    public abstract DumlNode freeze();
+    public abstract boolean isFrozen();
+
     public static final class DumlObjectNode extends DumlNode {
         private final Map<String, DumlNode> contents;
 
@@ -59,12 +110,18 @@ public abstract class DumlNode {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
             DumlObjectNode that = (DumlObjectNode) o;
-            return contents.equals(that.contents);
+            // Frozen contents remember their hash codes, and compare them before their entries
+            return contents == that.contents || contents.equals(that.contents);
         }
 
+        /**
+         * Remembered once computed for frozen nodes, and computed each time otherwise, as mutable
+         * contents can be changed by anyone holding them.
+         */
         @Override
         public int hashCode() {
-            return Objects.hash(contents);
+            // The same as Objects.hash(contents), without the array
+            return 31 + contents.hashCode();
         }
 
         @Override
@@ -102,13 +159,38 @@ public abstract class DumlNode {
 
         //@Nullable
         private DumlNode getInternal(String key) {
-            String[] keyComponents = key.split("\\.");
+            if (key.indexOf('.') < 0) {
+                return contents.get(key);
+            }
+            int partCount = DumlPath.countParts(key);
             DumlNode curNode = this;
-            for (String keyComponent : keyComponents) {
+            int start = 0;
+            for (int i = 0; i < partCount; i++) {
                 if (!(curNode instanceof DumlObjectNode)) {
                     return null;
                 }
-                DumlNode containedNode = ((DumlObjectNode) curNode).contents.get(keyComponent);
+                int end = key.indexOf('.', start);
+                if (end < 0) {
+                    end = key.length();
+                }
+                DumlNode containedNode = ((DumlObjectNode) curNode).contents.get(key.substring(start, end));
+                if (containedNode == null) {
+                    return null;
+                }
+                curNode = containedNode;
+                start = end + 1;
+            }
+            return curNode;
+        }
+
+        @Override
+        public DumlNode get(DumlPath path) {
+            DumlNode curNode = this;
+            for (int i = 0; i < path.size(); i++) {
+                if (!(curNode instanceof DumlObjectNode)) {
+                    return null;
+                }
+                DumlNode containedNode = ((DumlObjectNode) curNode).contents.get(path.getPart(i));
                 if (containedNode == null) {
                     return null;
                 }
@@ -131,6 +213,27 @@ public abstract class DumlNode {
         public Map<String, DumlNode> getMap() {
             return contents;
         }
+
+        @Override
+        public DumlObjectNode freeze() {
+            if (isFrozen()) {
+                return this;
+            }
+            String[] keys = new String[contents.size()];
+            DumlNode[] values = new DumlNode[contents.size()];
+            int i = 0;
+            for (Map.Entry<String, DumlNode> entry : contents.entrySet()) {
+                keys[i] = entry.getKey();
+                values[i] = entry.getValue().freeze();
+                i++;
+            }
+            return new DumlObjectNode(new FrozenMap(keys, values));
+        }
+
+        @Override
+        public boolean isFrozen() {
+            return contents instanceof FrozenMap;
+        }
     }
 
     public static final class DumlStringsNode extends DumlNode {
@@ -145,12 +248,12 @@ public abstract class DumlNode {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
             DumlStringsNode that = (DumlStringsNode) o;
-            return strings.equals(that.strings);
+            return strings == that.strings || strings.equals(that.strings);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(strings);
+            return 31 + strings.hashCode();
         }
 
         @Override
@@ -173,6 +276,11 @@ public abstract class DumlNode {
             return null;
         }
 
+        @Override
+        public DumlNode get(DumlPath path) {
+            return null;
+        }
+
         @Override
         public List<String> getStrings() {
             return strings;
@@ -191,5 +299,18 @@ public abstract class DumlNode {
         public Map<String, DumlNode> getMap() {
             return Collections.emptyMap();
         }
+
+        @Override
+        public DumlStringsNode freeze() {
+            if (isFrozen()) {
+                return this;
+            }
+            return new DumlStringsNode(FrozenStringList.copyOf(strings));
+        }
+
+        @Override
+        public boolean isFrozen() {
+            return strings instanceof FrozenStringList;
+        }
     }
 }
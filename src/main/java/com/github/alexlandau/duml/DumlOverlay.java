@@ -0,0 +1,117 @@
+package com.github.alexlandau.duml;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads several DUML files as layers, each overriding the ones before it. The files are parsed
+ * concurrently, and each result is merged in as soon as it and the results before it are ready, so
+ * loading takes not much longer than parsing the slowest file.
+ *
+ * Merging a layer applies its top-level nodes in the same way {@link DumlParser} applies entries:
+ * objects under the same key are merged, and otherwise the later node replaces the earlier one in
+ * its position, and the earlier one is lost. Unlike entries within a file, a later file's strings
+ * replace an earlier file's strings at the same key rather than being added to them, as that's
+ * what overriding means. Every lost node, including those lost within a file, is attributed to the
+ * file whose entries replaced it.
+ */
+final class DumlOverlay {
+    private final DumlNode rootNode = DumlNode.emptyObject();
+    private final List<LostNode> lostNodes = new ArrayList<>();
+    private final List<String> location = new ArrayList<>();
+
+    private DumlOverlay() {
+        // Use load()
+    }
+
+    static DumlParseResult load(List<Path> dumlFiles, DumlParserOptions options, Executor executor) throws IOException {
+        List<CompletableFuture<DumlParseResult>> parses = new ArrayList<>(dumlFiles.size());
+        for (Path dumlFile : dumlFiles) {
+            parses.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return DumlParser.parse(dumlFile, options);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+        DumlOverlay overlay = new DumlOverlay();
+        for (int i = 0; i < parses.size(); i++) {
+            overlay.add(dumlFiles.get(i), await(parses.get(i)));
+        }
+        return new DumlParseResult(overlay.rootNode, overlay.lostNodes);
+    }
+
+    /**
+     * Returns an executor with a virtual thread per task when the runtime has them, or else a pool
+     * with a platform thread per processor. The caller shuts it down.
+     */
+    static ExecutorService newDefaultExecutor(int taskCount) {
+        try {
+            Method newVirtualThreadPerTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threadCount = Math.max(1, Math.min(taskCount, Runtime.getRuntime().availableProcessors()));
+            return Executors.newFixedThreadPool(threadCount, runnable -> {
+                Thread thread = new Thread(runnable, "duml-overlay");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static DumlParseResult await(CompletableFuture<DumlParseResult> parse) throws IOException {
+        try {
+            return parse.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading DUML files");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    private void add(Path dumlFile, DumlParseResult layer) {
+        for (LostNode lostNode : layer.getLostNodes()) {
+            lostNodes.add(new LostNode(lostNode.getLocation(), lostNode.getNode(), dumlFile));
+        }
+        merge(rootNode, layer.getDuml(), dumlFile);
+    }
+
+    private void merge(DumlNode lower, DumlNode upper, Path dumlFile) {
+        Map<String, DumlNode> lowerMap = lower.getMap();
+        for (Map.Entry<String, DumlNode> entry : upper.getMap().entrySet()) {
+            String key = entry.getKey();
+            DumlNode upperNode = entry.getValue();
+            DumlNode lowerNode = lowerMap.get(key);
+            location.add(key);
+            if (lowerNode == null) {
+                lowerMap.put(key, upperNode);
+            } else if (lowerNode.isObject() && upperNode.isObject()) {
+                merge(lowerNode, upperNode, dumlFile);
+            } else {
+                lostNodes.add(new LostNode(Arrays.asList(location.toArray(new String[0])), lowerNode, dumlFile));
+                lowerMap.put(key, upperNode);
+            }
+            location.remove(location.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.github.alexlandau.duml;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Builds a tree from chunks of DUML, each made up of whole lines, using several threads, with the
+ * same result as parsing the chunks one after another.
+ *
+ * This relies on entries with different top-level keys never affecting each other. The chunks are
+ * first tokenized in parallel, with each entry sorted into a bucket by its top-level key. Then each
+ * bucket's entries are applied in their original order to a tree of its own, again in parallel.
+ * Finally the buckets' top-level nodes are combined in the order their keys first appeared, and
+ * their lost nodes are interleaved in the order of the entries that lost them.
+ */
+final class DumlParallelParser {
+    private final boolean trimValues;
+    private final ExecutorService executor;
+    private final int bucketCount;
+
+    DumlParallelParser(boolean trimValues, ExecutorService executor, int bucketCount) {
+        this.trimValues = trimValues;
+        this.executor = executor;
+        this.bucketCount = bucketCount;
+    }
+
+    /**
+     * Splits the remaining bytes of the buffer into chunks of about the given size, ending each
+     * chunk after a line break.
+     */
+    static List<ByteBuffer> splitAtLines(ByteBuffer buffer, int chunkSize) {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        int end = buffer.limit();
+        int chunkStart = buffer.position();
+        while (chunkStart < end) {
+            int chunkEnd = (int) Math.min((long) chunkStart + chunkSize, end);
+            while (chunkEnd < end) {
+                byte b = buffer.get(chunkEnd - 1);
+                if (b == '\n' || b == '\r') {
+                    break;
+                }
+                chunkEnd++;
+            }
+            ByteBuffer chunk = buffer.duplicate();
+            chunk.limit(chunkEnd);
+            chunk.position(chunkStart);
+            chunks.add(chunk);
+            chunkStart = chunkEnd;
+        }
+        return chunks;
+    }
+
+    /**
+     * Tokenizes and builds the UTF-8 encoded chunks, in order.
+     */
+    DumlParseResult parse(List<ByteBuffer> chunks) {
+        List<Callable<ChunkEntries>> tokenizeTasks = new ArrayList<>(chunks.size());
+        for (ByteBuffer chunk : chunks) {
+            tokenizeTasks.add(() -> tokenize(chunk));
+        }
+        return build(invokeAll(tokenizeTasks));
+    }
+
+    private ChunkEntries tokenize(ByteBuffer chunk) {
+        ChunkEntries entries = new ChunkEntries(bucketCount);
+        new DumlTokenizer(trimValues, StandardCharsets.UTF_8, entries).tokenize(chunk, true);
+        return entries;
+    }
+
+    private DumlParseResult build(List<ChunkEntries> chunkEntries) {
+        List<Callable<BucketResult>> buildTasks = new ArrayList<>(bucketCount);
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            int thisBucket = bucket;
+            buildTasks.add(() -> buildBucket(chunkEntries, thisBucket));
+        }
+        List<BucketResult> bucketResults = invokeAll(buildTasks);
+
+        List<SequencedKey> topLevelKeys = new ArrayList<>();
+        int lostNodeCount = 0;
+        for (BucketResult bucketResult : bucketResults) {
+            topLevelKeys.addAll(bucketResult.topLevelKeys);
+            lostNodeCount += bucketResult.lostNodes.size();
+        }
+        Collections.sort(topLevelKeys);
+        DumlNode rootNode = DumlNode.emptyObject();
+        for (SequencedKey topLevelKey : topLevelKeys) {
+            rootNode.getMap().put(topLevelKey.key, topLevelKey.node);
+        }
+
+        // Each entry loses at most one node, so the lost nodes are ordered by their entries
+        SequencedLostNode[] sequencedLostNodes = new SequencedLostNode[lostNodeCount];
+        int i = 0;
+        for (BucketResult bucketResult : bucketResults) {
+            for (int j = 0; j < bucketResult.lostNodes.size(); j++) {
+                sequencedLostNodes[i++] = new SequencedLostNode(bucketResult.lostNodeSequences[j], bucketResult.lostNodes.get(j));
+            }
+        }
+        Arrays.sort(sequencedLostNodes);
+        List<LostNode> lostNodes = new ArrayList<>(lostNodeCount);
+        for (SequencedLostNode sequencedLostNode : sequencedLostNodes) {
+            lostNodes.add(sequencedLostNode.lostNode);
+        }
+        return new DumlParseResult(rootNode, lostNodes);
+    }
+
+    private BucketResult buildBucket(List<ChunkEntries> chunkEntries, int bucket) {
+        DumlParser parser = new DumlParser();
+        List<SequencedKey> topLevelKeys = new ArrayList<>();
+        long[] lostNodeSequences = new long[16];
+        int lostNodeCount = 0;
+        for (int chunk = 0; chunk < chunkEntries.size(); chunk++) {
+            EntryList entries = chunkEntries.get(chunk).buckets[bucket];
+            if (entries == null) {
+                continue;
+            }
+            for (int i = 0; i < entries.size; i++) {
+                long sequence = ((long) chunk << 32) | entries.indices[i];
+                int topLevelKeyCount = parser.getTopLevelKeyCount();
+                parser.processKeyAndValue(entries.keys[i], entries.values[i]);
+                if (parser.getTopLevelKeyCount() > topLevelKeyCount) {
+                    topLevelKeys.add(new SequencedKey(sequence, DumlPath.firstPart(entries.keys[i])));
+                }
+                if (parser.getLostNodeCount() > lostNodeCount) {
+                    if (lostNodeCount == lostNodeSequences.length) {
+                        lostNodeSequences = Arrays.copyOf(lostNodeSequences, lostNodeCount * 2);
+                    }
+                    lostNodeSequences[lostNodeCount++] = sequence;
+                }
+            }
+        }
+        DumlParseResult result = parser.getResult();
+        for (SequencedKey topLevelKey : topLevelKeys) {
+            topLevelKey.node = result.getDuml().getMap().get(topLevelKey.key);
+        }
+        return new BucketResult(topLevelKeys, result.getLostNodes(), lostNodeSequences);
+    }
+
+    private static int bucketOf(CharSequence key, int bucketCount) {
+        // The same hash as String.hashCode() of the first key part, without creating it
+        int hash = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '.') {
+                break;
+            }
+            hash = 31 * hash + c;
+        }
+        return Math.floorMod(hash ^ (hash >>> 16), bucketCount);
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while parsing DUML", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("Error parsing DUML", cause);
+        }
+    }
+
+    /**
+     * The entries of one chunk, sorted into buckets by top-level key.
+     */
+    private static final class ChunkEntries implements DumlHandler {
+        private final EntryList[] buckets;
+        private int entryCount = 0;
+
+        ChunkEntries(int bucketCount) {
+            this.buckets = new EntryList[bucketCount];
+        }
+
+        @Override
+        public void onEntry(CharSequence key, CharSequence value, long line) {
+            add(key.toString(), value.toString());
+        }
+
+        private void add(String key, String value) {
+            int bucket = bucketOf(key, buckets.length);
+            if (buckets[bucket] == null) {
+                buckets[bucket] = new EntryList();
+            }
+            buckets[bucket].add(entryCount++, key, value);
+        }
+    }
+
+    private static final class EntryList {
+        private int[] indices = new int[16];
+        private String[] keys = new String[16];
+        private String[] values = new String[16];
+        private int size = 0;
+
+        void add(int index, String key, String value) {
+            if (size == keys.length) {
+                indices = Arrays.copyOf(indices, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            indices[size] = index;
+            keys[size] = key;
+            values[size] = value;
+            size++;
+        }
+    }
+
+    private static final class BucketResult {
+        private final List<SequencedKey> topLevelKeys;
+        private final List<LostNode> lostNodes;
+        private final long[] lostNodeSequences;
+
+        private BucketResult(List<SequencedKey> topLevelKeys, List<LostNode> lostNodes, long[] lostNodeSequences) {
+            this.topLevelKeys = topLevelKeys;
+            this.lostNodes = lostNodes;
+            this.lostNodeSequences = lostNodeSequences;
+        }
+    }
+
+    // Sequences are the chunk index in the upper 32 bits and the entry index in the lower 32 bits
+
+    private static final class SequencedKey implements Comparable<SequencedKey> {
+        private final long sequence;
+        private final String key;
+        private DumlNode node;
+
+        private SequencedKey(long sequence, String key) {
+            this.sequence = sequence;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(SequencedKey other) {
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static final class SequencedLostNode implements Comparable<SequencedLostNode> {
+        private final long sequence;
+        private final LostNode lostNode;
+
+        private SequencedLostNode(long sequence, LostNode lostNode) {
+            this.sequence = sequence;
+            this.lostNode = lostNode;
+        }
+
+        @Override
+        public int compareTo(SequencedLostNode other) {
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.alexlandau.duml;
+
+/**
+ * Receives measurements of each parse done with {@link DumlParserOptions} that name it. It's
+ * called on the parsing thread, after the tree is built and before the result is returned.
+ */
+@FunctionalInterface
+public interface DumlParseListener {
+    void onParsed(DumlParseMetrics metrics);
+}
@@ -0,0 +1,141 @@
+package com.github.alexlandau.duml;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measurements of a single parse, passed to a {@link DumlParseListener}. Node counts describe the
+ * finished tree, not including lost nodes.
+ */
+public final class DumlParseMetrics {
+    private final long inputSize;
+    private final long lineCount;
+    private final long durationNanos;
+    private final long objectNodeCount;
+    private final long stringsNodeCount;
+    private final long stringCount;
+    private final int maxKeyDepth;
+    private final int lostNodeCount;
+    private final int largestStringListSize;
+
+    private DumlParseMetrics(long inputSize, long lineCount, long durationNanos, long objectNodeCount,
+                             long stringsNodeCount, long stringCount, int maxKeyDepth, int lostNodeCount,
+                             int largestStringListSize) {
+        this.inputSize = inputSize;
+        this.lineCount = lineCount;
+        this.durationNanos = durationNanos;
+        this.objectNodeCount = objectNodeCount;
+        this.stringsNodeCount = stringsNodeCount;
+        this.stringCount = stringCount;
+        this.maxKeyDepth = maxKeyDepth;
+        this.lostNodeCount = lostNodeCount;
+        this.largestStringListSize = largestStringListSize;
+    }
+
+    /**
+     * Measures the result by walking its tree and lost nodes, which is only done when a listener
+     * is set.
+     */
+    static DumlParseMetrics of(DumlParseResult result, long inputSize, long lineCount, long durationNanos) {
+        Counter counter = new Counter();
+        counter.count(result.getDuml(), 0, true);
+        List<LostNode> lostNodes = result.getLostNodes();
+        for (LostNode lostNode : lostNodes) {
+            // Every entry's key leads to a strings node that is either in the tree or in a lost node
+            counter.count(lostNode.getNode(), lostNode.getLocation().size(), false);
+        }
+        return new DumlParseMetrics(inputSize, lineCount, durationNanos, counter.objectNodeCount,
+                counter.stringsNodeCount, counter.stringCount, counter.maxKeyDepth, lostNodes.size(),
+                counter.largestStringListSize);
+    }
+
+    /**
+     * The size of the input: a number of bytes when parsing bytes or files, or of chars when
+     * parsing a string.
+     */
+    public long getInputSize() {
+        return inputSize;
+    }
+
+    /**
+     * The number of lines read, including blank lines and comments.
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * The number of object nodes in the tree, including the root.
+     */
+    public long getObjectNodeCount() {
+        return objectNodeCount;
+    }
+
+    public long getStringsNodeCount() {
+        return stringsNodeCount;
+    }
+
+    /**
+     * The total number of strings in the tree's strings nodes.
+     */
+    public long getStringCount() {
+        return stringCount;
+    }
+
+    /**
+     * The largest number of parts in any entry's key, including entries whose nodes were lost.
+     */
+    public int getMaxKeyDepth() {
+        return maxKeyDepth;
+    }
+
+    public int getLostNodeCount() {
+        return lostNodeCount;
+    }
+
+    /**
+     * The largest number of strings in any strings node of the tree.
+     */
+    public int getLargestStringListSize() {
+        return largestStringListSize;
+    }
+
+    @Override
+    public String toString() {
+        return "DumlParseMetrics[inputSize=" + inputSize + ", lines=" + lineCount + ", durationNanos=" + durationNanos
+                + ", objectNodes=" + objectNodeCount + ", stringsNodes=" + stringsNodeCount + ", strings=" + stringCount
+                + ", maxKeyDepth=" + maxKeyDepth + ", lostNodes=" + lostNodeCount
+                + ", largestStringList=" + largestStringListSize + "]";
+    }
+
+    private static final class Counter {
+        private long objectNodeCount = 0;
+        private long stringsNodeCount = 0;
+        private long stringCount = 0;
+        private int maxKeyDepth = 0;
+        private int largestStringListSize = 0;
+
+        void count(DumlNode node, int depth, boolean inTree) {
+            if (node.isObject()) {
+                if (inTree) {
+                    objectNodeCount++;
+                }
+                for (Map.Entry<String, DumlNode> entry : node.getMap().entrySet()) {
+                    count(entry.getValue(), depth + 1, inTree);
+                }
+            } else {
+                maxKeyDepth = Math.max(maxKeyDepth, depth);
+                if (inTree) {
+                    int size = node.getStrings().size();
+                    stringsNodeCount++;
+                    stringCount += size;
+                    largestStringListSize = Math.max(largestStringListSize, size);
+                }
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.github.alexlandau.duml;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -20,6 +22,22 @@ public class DumlParseResult {
         return lostNodes;
     }
 
+    /**
+     * Returns an immutable copy of this result, with the tree and every lost node frozen.
+     *
+     * @see DumlNode#freeze()
+     */
+    public DumlParseResult freeze() {
+        List<LostNode> frozenLostNodes = new ArrayList<>(lostNodes.size());
+        for (LostNode lostNode : lostNodes) {
+            frozenLostNodes.add(new LostNode(
+                    Collections.unmodifiableList(new ArrayList<>(lostNode.getLocation())),
+                    lostNode.getNode().freeze(),
+                    lostNode.getSource()));
+        }
+        return new DumlParseResult(duml.freeze(), Collections.unmodifiableList(frozenLostNodes));
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
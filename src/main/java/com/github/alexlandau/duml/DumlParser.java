@@ -1,19 +1,48 @@
 package com.github.alexlandau.duml;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 public class DumlParser {
-    private final boolean trimValues;
-    private DumlParser(boolean trimValues) {
-        this.trimValues = trimValues;
+    DumlParser() {
+        this(DumlParserOptions.of(false));
+    }
+
+    DumlParser(DumlParserOptions options) {
+        // Instances hold the state of a single parse
+        this.internValues = options.isInternValues();
+        this.interner = options.getInterner();
+        this.maxKeyDepth = options.getMaxKeyDepth();
+        this.maxTotalNodes = options.getMaxTotalNodes();
+        this.maxValuesPerKey = options.getMaxValuesPerKey();
+        this.maxRetainedChars = options.getMaxRetainedChars();
     }
 
     public static DumlParseResult parse(String dumlText, boolean trimValues) {
+        return parse(dumlText, DumlParserOptions.of(trimValues));
+    }
+
+    public static DumlParseResult parse(String dumlText, DumlParserOptions options) {
         try {
-            return new DumlParser(trimValues).run(new StringReader(dumlText));
+            return new DumlParser(options).run(new StringReader(dumlText), dumlText.length(), options);
         } catch (IOException e) {
             // This shouldn't happen
             e.printStackTrace();
@@ -22,86 +51,430 @@ public class DumlParser {
     }
 
     public static DumlParseResult parse(File dumlFile, boolean trimValues) throws IOException {
-        return new DumlParser(trimValues).run(new BufferedReader(new FileReader(dumlFile)));
+        return parse(dumlFile, DumlParserOptions.of(trimValues));
     }
 
-    private static final int NEWLINE_N = '\n';
-    private static final int NEWLINE_R = '\r';
-    private static final int EOF = -1;
-    private static final int SPACE = ' ';
-    private static final int TAB = '\t';
+    public static DumlParseResult parse(File dumlFile, DumlParserOptions options) throws IOException {
+        try (Reader reader = new BufferedReader(new FileReader(dumlFile))) {
+            return new DumlParser(options).run(reader, dumlFile.length(), options);
+        }
+    }
 
-    // State of the thing being built
-    private final DumlNode rootNode = DumlNode.emptyObject();
-    private final List<LostNode> lostNodes = new ArrayList<>();
+    /**
+     * Parses UTF-8 encoded DUML directly from bytes, without going through a {@link Reader}.
+     */
+    public static DumlParseResult parse(byte[] dumlBytes, boolean trimValues) {
+        return parse(ByteBuffer.wrap(dumlBytes), trimValues);
+    }
 
-    private DumlParseResult run(Reader reader) throws IOException {
-        perLineLoop : while (true) {
-            StringBuilder keyBuilder = new StringBuilder();
-            final String key;
-
-            reader.mark(1);
-            int firstChar = reader.read();
-            if (firstChar == '#') {
-                // Handle comment; ignore the rest of the line
-                int curChar = firstChar;
-                while (curChar != '\n' && curChar != '\r' && curChar != -1) {
-                    curChar = reader.read();
-                }
-                continue perLineLoop;
-            } else {
-                reader.reset();
+    /**
+     * Parses UTF-8 encoded DUML directly from bytes, without going through a {@link Reader}.
+     */
+    public static DumlParseResult parse(byte[] dumlBytes, DumlParserOptions options) {
+        return parse(ByteBuffer.wrap(dumlBytes), options);
+    }
+
+    /**
+     * Parses UTF-8 encoded DUML from the remaining bytes of the buffer. The buffer's position
+     * and limit are not modified.
+     */
+    public static DumlParseResult parse(ByteBuffer dumlBytes, boolean trimValues) {
+        return parse(dumlBytes, DumlParserOptions.of(trimValues));
+    }
+
+    /**
+     * Parses UTF-8 encoded DUML from the remaining bytes of the buffer. The buffer's position
+     * and limit are not modified.
+     */
+    public static DumlParseResult parse(ByteBuffer dumlBytes, DumlParserOptions options) {
+        long startTime = startTime(options);
+        DumlParser parser = new DumlParser(options);
+        DumlTokenizer tokenizer = new DumlTokenizer(options, StandardCharsets.UTF_8, parser::addEntry);
+        tokenizer.tokenize(dumlBytes, true);
+        return parser.finish(options, dumlBytes.remaining(), tokenizer.getLineCount(), startTime);
+    }
+
+    /**
+     * Parses a UTF-8 encoded DUML file by memory-mapping it.
+     */
+    public static DumlParseResult parse(Path dumlFile, boolean trimValues) throws IOException {
+        return parse(dumlFile, StandardCharsets.UTF_8, trimValues);
+    }
+
+    /**
+     * Parses a UTF-8 encoded DUML file by memory-mapping it.
+     */
+    public static DumlParseResult parse(Path dumlFile, DumlParserOptions options) throws IOException {
+        return parse(dumlFile, StandardCharsets.UTF_8, options);
+    }
+
+    /**
+     * Parses a DUML file in the given charset. For UTF-8, US-ASCII, and ISO-8859-1, the file is
+     * memory-mapped and scanned in place, so its contents are never copied onto the heap as a
+     * whole; files larger than 2GB are mapped one window at a time. Other charsets are decoded
+     * as a stream.
+     */
+    public static DumlParseResult parse(Path dumlFile, Charset charset, boolean trimValues) throws IOException {
+        return parse(dumlFile, charset, DumlParserOptions.of(trimValues));
+    }
+
+    /**
+     * Parses a DUML file in the given charset.
+     *
+     * @see #parse(Path, Charset, boolean)
+     */
+    public static DumlParseResult parse(Path dumlFile, Charset charset, DumlParserOptions options) throws IOException {
+        return parseMapped(dumlFile, charset, options, MAX_MAPPED_WINDOW_SIZE);
+    }
+
+    /**
+     * Parses UTF-8 encoded DUML read from the channel until its end, parsing each chunk as it's
+     * read. The channel must be in blocking mode, and is not closed; for non-blocking channels,
+     * use {@link DumlPushParser#readFrom(ReadableByteChannel)}.
+     */
+    public static DumlParseResult parse(ReadableByteChannel channel, DumlParserOptions options) throws IOException {
+        DumlPushParser pushParser = DumlPushParser.create(options);
+        while (pushParser.readFrom(channel)) {
+            // Keep reading
+        }
+        return pushParser.finish();
+    }
+
+    /**
+     * Parses UTF-8 encoded DUML read from the channel until its end, without blocking a thread
+     * while waiting for input. The channel is not closed.
+     */
+    public static CompletableFuture<DumlParseResult> parseAsync(AsynchronousByteChannel channel, DumlParserOptions options) {
+        return DumlPushParser.parseAsync(channel, options);
+    }
+
+    /**
+     * Parses a UTF-8 encoded DUML file with asynchronous reads, so no thread is blocked waiting
+     * for the file; each chunk is parsed as it arrives.
+     */
+    public static CompletableFuture<DumlParseResult> parseAsync(Path dumlFile, DumlParserOptions options) {
+        AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(dumlFile, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return DumlPushParser.parseAsync(channel, options).whenComplete((result, e) -> {
+            try {
+                channel.close();
+            } catch (IOException closeException) {
+                // The result is already known, so there's nothing left to fail
             }
+        });
+    }
+
+    /**
+     * Passes each line of the DUML text to the handler instead of building a tree.
+     */
+    public static void parse(String dumlText, boolean trimValues, DumlHandler handler) {
+        try {
+            parse(new StringReader(dumlText), trimValues, handler);
+        } catch (IOException e) {
+            // This shouldn't happen
+            throw new RuntimeException("Error parsing DUML string " + dumlText, e);
+        }
+    }
+
+    /**
+     * Passes each line read from the reader to the handler instead of building a tree. The
+     * reader is not closed.
+     */
+    public static void parse(Reader reader, boolean trimValues, DumlHandler handler) throws IOException {
+        new DumlTokenizer(trimValues, StandardCharsets.UTF_8, handler).tokenize(reader);
+    }
+
+    /**
+     * Passes each line of the UTF-8 encoded bytes to the handler instead of building a tree. The
+     * buffer's position and limit are not modified.
+     */
+    public static void parse(ByteBuffer dumlBytes, boolean trimValues, DumlHandler handler) {
+        new DumlTokenizer(trimValues, StandardCharsets.UTF_8, handler).tokenize(dumlBytes, true);
+    }
+
+    /**
+     * Passes each line of the DUML file to the handler instead of building a tree. The file is
+     * read the same way as in {@link #parse(Path, Charset, boolean)}.
+     */
+    public static void parse(Path dumlFile, Charset charset, boolean trimValues, DumlHandler handler) throws IOException {
+        scanMapped(dumlFile, charset, new DumlTokenizer(trimValues, charset, handler), MAX_MAPPED_WINDOW_SIZE);
+    }
+
+    /**
+     * Loads the files as layers, with each file overriding the ones before it, parsing them
+     * concurrently on virtual threads where the runtime has them, or else on a thread per
+     * processor. Lost nodes are attributed to the file whose entries replaced them; see
+     * {@link LostNode#getSource()}.
+     *
+     * @see #parseOverlay(List, DumlParserOptions, Executor)
+     */
+    public static DumlParseResult parseOverlay(List<Path> dumlFiles, DumlParserOptions options) throws IOException {
+        if (dumlFiles.isEmpty()) {
+            return new DumlParser(options).getResult();
+        }
+        ExecutorService executor = DumlOverlay.newDefaultExecutor(dumlFiles.size());
+        try {
+            return DumlOverlay.load(dumlFiles, options, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Loads the files as layers, with each file overriding the ones before it, parsing each one
+     * with {@link #parse(Path, DumlParserOptions)} on the given executor. The result is always the
+     * same as loading them one after another.
+     *
+     * Nodes from later files are merged into those from earlier files: objects under the same key
+     * are merged, and otherwise the later node replaces the earlier one, which is lost. This
+     * includes strings, so a later file's values for a key replace an earlier file's values
+     * rather than being added to them.
+     */
+    public static DumlParseResult parseOverlay(List<Path> dumlFiles, DumlParserOptions options, Executor executor) throws IOException {
+        return DumlOverlay.load(dumlFiles, options, executor);
+    }
+
+    /**
+     * Parses UTF-8 encoded DUML using the threads of the common fork-join pool, with the same
+     * result as {@link #parse(ByteBuffer, boolean)}. The buffer's position and limit are not
+     * modified.
+     */
+    public static DumlParseResult parseParallel(ByteBuffer dumlBytes, boolean trimValues) {
+        return parseParallel(dumlBytes, trimValues, ForkJoinPool.commonPool());
+    }
 
-            readKeyCharLoop : while (true) {
-                int curChar = reader.read();
-                if (curChar == SPACE || curChar == TAB) {
-                    key = keyBuilder.toString();
-                    break readKeyCharLoop;
-                } else if (curChar == NEWLINE_R || curChar == NEWLINE_N || curChar == EOF) {
-                    key = keyBuilder.toString();
-                    if (!key.isEmpty()) {
-                        processKeyAndValue(key, "");
+    /**
+     * Parses UTF-8 encoded DUML using the threads of the given pool, with the same result as
+     * {@link #parse(ByteBuffer, boolean)}. The input is split into chunks of whole lines that are
+     * tokenized in parallel, and then entries under different top-level keys are built into the
+     * tree in parallel, so a document with few top-level keys gains less.
+     */
+    public static DumlParseResult parseParallel(ByteBuffer dumlBytes, boolean trimValues, ForkJoinPool pool) {
+        int parallelism = pool.getParallelism();
+        int chunkSize = (int) Math.max(MIN_PARALLEL_CHUNK_SIZE, dumlBytes.remaining() / (parallelism * 4L));
+        List<ByteBuffer> chunks = DumlParallelParser.splitAtLines(dumlBytes, chunkSize);
+        return new DumlParallelParser(trimValues, pool, parallelism * 4).parse(chunks);
+    }
+
+    /**
+     * Parses a UTF-8 encoded DUML file by memory-mapping it and using the threads of the common
+     * fork-join pool, with the same result as {@link #parse(Path, boolean)}.
+     */
+    public static DumlParseResult parseParallel(Path dumlFile, boolean trimValues) throws IOException {
+        return parseParallel(dumlFile, trimValues, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses a UTF-8 encoded DUML file by memory-mapping it and using the threads of the given
+     * pool, with the same result as {@link #parse(Path, boolean)}.
+     *
+     * @see #parseParallel(ByteBuffer, boolean, ForkJoinPool)
+     */
+    public static DumlParseResult parseParallel(Path dumlFile, boolean trimValues, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(dumlFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            int parallelism = pool.getParallelism();
+            int chunkSize = (int) Math.min(MAX_MAPPED_WINDOW_SIZE, Math.max(MIN_PARALLEL_CHUNK_SIZE, fileSize / (parallelism * 4L)));
+            List<ByteBuffer> chunks = new ArrayList<>();
+            long offset = 0;
+            while (offset < fileSize) {
+                long length = Math.min(MAX_MAPPED_WINDOW_SIZE, fileSize - offset);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                if (offset + length < fileSize) {
+                    // End the window after its last line break, so no line is split between windows
+                    int windowEnd = window.limit();
+                    while (windowEnd > 0 && window.get(windowEnd - 1) != '\n' && window.get(windowEnd - 1) != '\r') {
+                        windowEnd--;
                     }
-                    if (curChar == EOF) {
-                        return new DumlParseResult(rootNode, lostNodes);
+                    if (windowEnd == 0) {
+                        throw new IOException("Line starting at byte " + offset + " of " + dumlFile + " is too long to map");
                     }
-                    continue perLineLoop;
-                } else {
-                    keyBuilder.appendCodePoint(curChar);
+                    window.limit(windowEnd);
                 }
+                chunks.addAll(DumlParallelParser.splitAtLines(window, chunkSize));
+                offset += window.limit();
+            }
+            return new DumlParallelParser(trimValues, pool, parallelism * 4).parse(chunks);
+        }
+    }
+
+    /**
+     * Parses UTF-8 encoded DUML lazily: one pass over the buffer finds where each line's key is,
+     * and each part of the tree is only built, and its keys and values decoded, when it's first
+     * reached through the returned nodes. The result is equal to that of
+     * {@link #parse(ByteBuffer, boolean)}, but is read-only; its strings nodes are frozen, and its
+     * object nodes can't be modified. Building is thread-safe, so the result can be shared. The
+     * lost nodes require a full parse, done the first time they're used.
+     *
+     * The buffer's position and limit are not modified, but its contents must not change while
+     * the result is in use.
+     *
+     * @throws IllegalArgumentException if a key is made of only '.'s, so it has no parts
+     */
+    public static DumlParseResult parseLazy(ByteBuffer dumlBytes, boolean trimValues) {
+        return LazyMap.parse(dumlBytes, trimValues);
+    }
+
+    /**
+     * Parses a UTF-8 encoded DUML file lazily from a memory-mapped view of the file, with the same
+     * result as {@link #parse(Path, boolean)}.
+     *
+     * @see #parseLazy(ByteBuffer, boolean)
+     */
+    public static DumlParseResult parseLazy(Path dumlFile, boolean trimValues) throws IOException {
+        try (FileChannel channel = FileChannel.open(dumlFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize > MAX_MAPPED_WINDOW_SIZE) {
+                throw new IOException(dumlFile + " is too large to parse lazily");
             }
+            // The mapping stays valid after the channel is closed
+            return LazyMap.parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize), trimValues);
+        }
+    }
+
+    private static final long MAX_MAPPED_WINDOW_SIZE = Integer.MAX_VALUE;
+    // Smaller chunks aren't worth handing to another thread
+    private static final int MIN_PARALLEL_CHUNK_SIZE = 1 << 16;
+
+    // Visible for testing
+    static DumlParseResult parseMapped(Path dumlFile, Charset charset, DumlParserOptions options, long windowSize) throws IOException {
+        long startTime = startTime(options);
+        DumlParser parser = new DumlParser(options);
+        DumlTokenizer tokenizer = new DumlTokenizer(options, charset, parser::addEntry);
+        long fileSize = scanMapped(dumlFile, charset, tokenizer, windowSize);
+        return parser.finish(options, fileSize, tokenizer.getLineCount(), startTime);
+    }
 
-            StringBuilder valueBuilder = new StringBuilder();
-            readValueLoop : while (true) {
-                int curChar = reader.read();
+    /**
+     * Passes the file through the tokenizer, which must use the given charset.
+     *
+     * @return the size of the file
+     */
+    private static long scanMapped(Path dumlFile, Charset charset, DumlTokenizer tokenizer, long windowSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(dumlFile, StandardOpenOption.READ)) {
+            if (!DumlTokenizer.isAsciiCompatible(charset)) {
+                Reader reader = Channels.newReader(channel, charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE), -1);
+                tokenizer.tokenize(new BufferedReader(reader));
+                return channel.size();
+            }
 
-                if (curChar == NEWLINE_N || curChar == NEWLINE_R || curChar == EOF) {
-                    String value = valueBuilder.toString();
-                    processKeyAndValue(key, value);
-                    if (curChar == EOF) {
-                        return new DumlParseResult(rootNode, lostNodes);
+            long fileSize = channel.size();
+            long offset = 0;
+            long mappingSize = windowSize;
+            while (offset < fileSize) {
+                long length = Math.min(mappingSize, fileSize - offset);
+                boolean endOfInput = offset + length == fileSize;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                int consumed = tokenizer.tokenize(window, endOfInput);
+                if (consumed == 0 && !endOfInput) {
+                    // A single line doesn't fit in the window, so try again with a bigger one
+                    if (mappingSize >= MAX_MAPPED_WINDOW_SIZE) {
+                        throw new IOException("Line starting at byte " + offset + " of " + dumlFile + " is too long to map");
                     }
-                    continue perLineLoop;
-                } else {
-                    valueBuilder.appendCodePoint(curChar);
+                    mappingSize = Math.min(mappingSize * 2, MAX_MAPPED_WINDOW_SIZE);
+                    continue;
                 }
+                offset += consumed;
+                mappingSize = windowSize;
             }
+            return fileSize;
         }
     }
 
-    private void processKeyAndValue(String key, String value) {
-        if (trimValues) {
-            value = value.trim();
+    // State of the thing being built
+    private final DumlNode rootNode = DumlNode.emptyObject();
+    private final List<LostNode> lostNodes = new ArrayList<>();
+
+    private DumlParseResult run(Reader reader, long inputSize, DumlParserOptions options) throws IOException {
+        long startTime = startTime(options);
+        DumlTokenizer tokenizer = new DumlTokenizer(options, StandardCharsets.UTF_8, this::addEntry);
+        tokenizer.tokenize(reader);
+        return finish(options, inputSize, tokenizer.getLineCount(), startTime);
+    }
+
+    // Time is only measured for a listener, so parsing without one costs nothing extra
+    static long startTime(DumlParserOptions options) {
+        return options.getListener() == null ? 0 : System.nanoTime();
+    }
+
+    DumlParseResult finish(DumlParserOptions options, long inputSize, long lineCount, long startTime) {
+        DumlParseResult result = getResult();
+        DumlParseListener listener = options.getListener();
+        if (listener != null) {
+            listener.onParsed(DumlParseMetrics.of(result, inputSize, lineCount, System.nanoTime() - startTime));
+        }
+        return result;
+    }
+
+    DumlParseResult getResult() {
+        return new DumlParseResult(rootNode, lostNodes);
+    }
+
+    int getTopLevelKeyCount() {
+        return rootNode.getMap().size();
+    }
+
+    int getLostNodeCount() {
+        return lostNodes.size();
+    }
+
+    // Reused to split each key: the end of each part, and the part itself once it's looked up
+    private int[] keyPartEnds = new int[8];
+    private String[] keyParts = new String[8];
+    private final StringTable stringTable = new StringTable();
+    private final boolean internValues;
+    //@Nullable
+    private final DumlInterner interner;
+
+    // Limits, and what they've counted so far
+    private final int maxKeyDepth;
+    private final long maxTotalNodes;
+    private final int maxValuesPerKey;
+    private final long maxRetainedChars;
+    private long totalNodes = 0;
+    private long retainedChars = 0;
+    // The line of the entry being added, for reporting limits; entries not read from a document have none
+    private long line = 0;
+
+    void addEntry(CharSequence key, CharSequence value, long line) {
+        this.line = line;
+        processKeyAndValue(key, internValues ? intern(value, 0, value.length()) : value.toString());
+    }
+
+    private String intern(CharSequence chars, int start, int end) {
+        return interner != null ? interner.intern(chars, start, end) : stringTable.get(chars, start, end);
+    }
+
+    /**
+     * Adds the entry to the tree. The key is only read during this call, and is split in place;
+     * Strings are only created for key parts that haven't been seen before in this parse, or that
+     * aren't in the interner.
+     */
+    void processKeyAndValue(CharSequence key, String value) {
+        int keyPartCount = findKeyPartEnds(key);
+        if (keyPartCount > maxKeyDepth) {
+            throw new DumlLimitException(DumlLimitException.Limit.KEY_DEPTH, maxKeyDepth, line);
+        }
+        if (keyPartCount > keyParts.length) {
+            keyParts = new String[keyPartEnds.length];
         }
-        String[] keyParts = key.split("\\.");
 
         DumlNode keyNode = rootNode;
         // For each key part that isn't the last...
-        for (int i = 0; i < keyParts.length - 1; i++) {
-            String keyPart = keyParts[i];
+        for (int i = 0; i < keyPartCount - 1; i++) {
+            String keyPart = intern(key, i == 0 ? 0 : keyPartEnds[i - 1] + 1, keyPartEnds[i]);
+            keyParts[i] = keyPart;
             // TODO: Get back to this part
-            DumlNode curValue = keyNode.get(keyPart);
+            DumlNode curValue = keyNode.getMap().get(keyPart);
+            if (curValue == null || curValue.isStrings()) {
+                countNode(keyPart);
+            }
             if (curValue == null) {
                 DumlNode.DumlObjectNode newNode = DumlNode.emptyObject();
                 keyNode.getMap().put(keyPart, newNode);
@@ -109,7 +482,7 @@ public class DumlParser {
             } else if (curValue.isObject()) {
                 keyNode = curValue;
             } else if (curValue.isStrings()) {
-                lostNodes.add(new LostNode(Arrays.asList(keyParts).subList(0, i + 1), curValue));
+                lostNodes.add(new LostNode(Arrays.asList(Arrays.copyOf(keyParts, i + 1)), curValue));
 
                 DumlNode.DumlObjectNode newNode = DumlNode.emptyObject();
                 keyNode.getMap().put(keyPart, newNode);
@@ -118,14 +491,22 @@ public class DumlParser {
         }
 
         // For the last part of the key, assume the current keyNode is an object
-        String lastKeyPart = keyParts[keyParts.length - 1];
-        DumlNode curNodeAtKey = keyNode.get(lastKeyPart);
+        String lastKeyPart = intern(key, keyPartCount == 1 ? 0 : keyPartEnds[keyPartCount - 2] + 1,
+                keyPartEnds[keyPartCount - 1]);
+        keyParts[keyPartCount - 1] = lastKeyPart;
+        DumlNode curNodeAtKey = keyNode.getMap().get(lastKeyPart);
+        if (curNodeAtKey == null || curNodeAtKey.isObject()) {
+            countNode(lastKeyPart);
+        } else if (curNodeAtKey.getStrings().size() >= maxValuesPerKey) {
+            throw new DumlLimitException(DumlLimitException.Limit.VALUES_PER_KEY, maxValuesPerKey, line);
+        }
+        countRetainedChars(value.length());
         if (curNodeAtKey == null) {
             DumlNode newNode = DumlNode.emptyStrings();
             keyNode.getMap().put(lastKeyPart, newNode);
             curNodeAtKey = newNode;
         } else if (curNodeAtKey.isObject()) {
-            lostNodes.add(new LostNode(Arrays.asList(keyParts), curNodeAtKey));
+            lostNodes.add(new LostNode(Arrays.asList(Arrays.copyOf(keyParts, keyPartCount)), curNodeAtKey));
 
             DumlNode newNode = DumlNode.emptyStrings();
             keyNode.getMap().put(lastKeyPart, newNode);
@@ -136,4 +517,47 @@ public class DumlParser {
 
         curNodeAtKey.getStrings().add(value);
     }
+
+    private void countNode(String keyPart) {
+        if (++totalNodes > maxTotalNodes) {
+            throw new DumlLimitException(DumlLimitException.Limit.TOTAL_NODES, maxTotalNodes, line);
+        }
+        countRetainedChars(keyPart.length());
+    }
+
+    private void countRetainedChars(int length) {
+        retainedChars += length;
+        if (retainedChars > maxRetainedChars) {
+            throw new DumlLimitException(DumlLimitException.Limit.RETAINED_CHARS, maxRetainedChars, line);
+        }
+    }
+
+    /**
+     * Finds where each part of the key ends, splitting it the same way as {@link DumlPath#split}.
+     *
+     * @return the number of parts
+     */
+    private int findKeyPartEnds(CharSequence key) {
+        int length = key.length();
+        if (length == 0) {
+            keyPartEnds[0] = 0;
+            return 1;
+        }
+        int count = 0;
+        int lastNonEmptyCount = 0;
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || key.charAt(i) == DumlPath.KEY_SEPARATOR) {
+                if (count == keyPartEnds.length) {
+                    keyPartEnds = Arrays.copyOf(keyPartEnds, count * 2);
+                }
+                keyPartEnds[count++] = i;
+                if (i > start) {
+                    lastNonEmptyCount = count;
+                }
+                start = i + 1;
+            }
+        }
+        return lastNonEmptyCount;
+    }
 }
@@ -0,0 +1,205 @@
+package com.github.alexlandau.duml;
+
+/**
+ * Settings for a parse with {@link DumlParser}. Options are immutable and can be reused.
+ *
+ * For untrusted input, limits can be set on the size of lines, keys, and the tree, so that memory
+ * use stays bounded whatever the input. They're checked as each line is read, so the parse stops
+ * at the first line that exceeds one; the lazy, parallel, and {@link DumlHandler} parses don't
+ * take options, and have no limits.
+ */
+public final class DumlParserOptions {
+    private static final DumlParserOptions UNTRIMMED = builder().trimValues(false).build();
+    private static final DumlParserOptions TRIMMED = builder().trimValues(true).build();
+
+    private final boolean trimValues;
+    //@Nullable
+    private final DumlParseListener listener;
+    private final boolean internValues;
+    //@Nullable
+    private final DumlInterner interner;
+    private final int maxLineLength;
+    private final int maxKeyDepth;
+    private final long maxTotalNodes;
+    private final int maxValuesPerKey;
+    private final long maxRetainedChars;
+
+    private DumlParserOptions(Builder builder) {
+        this.trimValues = builder.trimValues;
+        this.listener = builder.listener;
+        this.internValues = builder.internValues;
+        this.interner = builder.interner;
+        this.maxLineLength = builder.maxLineLength;
+        this.maxKeyDepth = builder.maxKeyDepth;
+        this.maxTotalNodes = builder.maxTotalNodes;
+        this.maxValuesPerKey = builder.maxValuesPerKey;
+        this.maxRetainedChars = builder.maxRetainedChars;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // The options used by the methods that only take trimValues
+    static DumlParserOptions of(boolean trimValues) {
+        return trimValues ? TRIMMED : UNTRIMMED;
+    }
+
+    public boolean isTrimValues() {
+        return trimValues;
+    }
+
+    //@Nullable
+    public DumlParseListener getListener() {
+        return listener;
+    }
+
+    public boolean isInternValues() {
+        return internValues;
+    }
+
+    //@Nullable
+    public DumlInterner getInterner() {
+        return interner;
+    }
+
+    public int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    public int getMaxKeyDepth() {
+        return maxKeyDepth;
+    }
+
+    public long getMaxTotalNodes() {
+        return maxTotalNodes;
+    }
+
+    public int getMaxValuesPerKey() {
+        return maxValuesPerKey;
+    }
+
+    public long getMaxRetainedChars() {
+        return maxRetainedChars;
+    }
+
+    @Override
+    public String toString() {
+        return "DumlParserOptions[trimValues=" + trimValues + ", listener=" + listener
+                + ", internValues=" + internValues + ", interner=" + interner
+                + ", maxLineLength=" + maxLineLength + ", maxKeyDepth=" + maxKeyDepth
+                + ", maxTotalNodes=" + maxTotalNodes + ", maxValuesPerKey=" + maxValuesPerKey
+                + ", maxRetainedChars=" + maxRetainedChars + "]";
+    }
+
+    public static final class Builder {
+        private boolean trimValues = false;
+        private DumlParseListener listener = null;
+        private boolean internValues = false;
+        private DumlInterner interner = null;
+        private int maxLineLength = Integer.MAX_VALUE;
+        private int maxKeyDepth = Integer.MAX_VALUE;
+        private long maxTotalNodes = Long.MAX_VALUE;
+        private int maxValuesPerKey = Integer.MAX_VALUE;
+        private long maxRetainedChars = Long.MAX_VALUE;
+
+        private Builder() {
+            // Use DumlParserOptions.builder()
+        }
+
+        /**
+         * Whether to remove leading and trailing whitespace from values, as with
+         * {@link String#trim()}.
+         */
+        public Builder trimValues(boolean trimValues) {
+            this.trimValues = trimValues;
+            return this;
+        }
+
+        /**
+         * Sets a listener to receive metrics of each parse. Without one, no metrics are gathered.
+         */
+        public Builder listener(DumlParseListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Whether to keep only one copy of each distinct value, as is always done for key parts.
+         * This takes a little longer, but saves memory when values repeat.
+         */
+        public Builder internValues(boolean internValues) {
+            this.internValues = internValues;
+            return this;
+        }
+
+        /**
+         * Sets an interner to share key parts, and values if they're interned, with other parses.
+         * Without one, strings are only shared within each parse.
+         */
+        public Builder interner(DumlInterner interner) {
+            this.interner = interner;
+            return this;
+        }
+
+        /**
+         * Limits the length of each line, not counting its line break. This is in chars when
+         * reading text, and in bytes when reading bytes, files, or channels. Lines are checked as
+         * they're read, so a longer line is never buffered in full. There's no limit by default,
+         * as with the other limits; a document that exceeds one fails with a
+         * {@link DumlLimitException}.
+         */
+        public Builder maxLineLength(int maxLineLength) {
+            checkLimit(maxLineLength);
+            this.maxLineLength = maxLineLength;
+            return this;
+        }
+
+        /**
+         * Limits the number of parts in each key.
+         */
+        public Builder maxKeyDepth(int maxKeyDepth) {
+            checkLimit(maxKeyDepth);
+            this.maxKeyDepth = maxKeyDepth;
+            return this;
+        }
+
+        /**
+         * Limits the number of nodes created under the root, including any that are later lost.
+         */
+        public Builder maxTotalNodes(long maxTotalNodes) {
+            checkLimit(maxTotalNodes);
+            this.maxTotalNodes = maxTotalNodes;
+            return this;
+        }
+
+        /**
+         * Limits the number of strings under a single key.
+         */
+        public Builder maxValuesPerKey(int maxValuesPerKey) {
+            checkLimit(maxValuesPerKey);
+            this.maxValuesPerKey = maxValuesPerKey;
+            return this;
+        }
+
+        /**
+         * Limits the total length of the values and the key parts kept in the tree, counting
+         * each value in full even when it's interned.
+         */
+        public Builder maxRetainedChars(long maxRetainedChars) {
+            checkLimit(maxRetainedChars);
+            this.maxRetainedChars = maxRetainedChars;
+            return this;
+        }
+
+        public DumlParserOptions build() {
+            return new DumlParserOptions(this);
+        }
+
+        private static void checkLimit(long limit) {
+            if (limit < 0) {
+                throw new IllegalArgumentException("Limits can't be negative: " + limit);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.alexlandau.duml;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A key path that has already been split into its parts, for repeated lookups with
+ * {@link DumlNode#get(DumlPath)} and related methods. Looking up a DumlPath doesn't allocate.
+ */
+public final class DumlPath {
+    static final char KEY_SEPARATOR = '.';
+
+    private final String[] parts;
+
+    private DumlPath(String[] parts) {
+        this.parts = parts;
+    }
+
+    /**
+     * Creates a path that finds the same node as {@link DumlNode#get(String, String...)} does
+     * with the same arguments.
+     */
+    public static DumlPath of(String key, String... moreKeys) {
+        int partCount = countParts(key);
+        for (String additionalKey : moreKeys) {
+            partCount += countParts(additionalKey);
+        }
+        String[] parts = new String[partCount];
+        int offset = split(key, countParts(key), parts, 0);
+        for (String additionalKey : moreKeys) {
+            offset = split(additionalKey, countParts(additionalKey), parts, offset);
+        }
+        return new DumlPath(parts);
+    }
+
+    // Uses the array itself, which must not be modified afterwards
+    static DumlPath ofParts(String[] parts) {
+        return new DumlPath(parts);
+    }
+
+    /**
+     * The number of parts the key has, following the rules of key.split("\\."): trailing empty
+     * parts are dropped, unless the key is empty altogether.
+     */
+    static int countParts(String key) {
+        if (key.isEmpty()) {
+            return 1;
+        }
+        int count = 0;
+        int lastNonEmptyCount = 0;
+        int start = 0;
+        while (start <= key.length()) {
+            int end = key.indexOf(KEY_SEPARATOR, start);
+            if (end < 0) {
+                end = key.length();
+            }
+            count++;
+            if (end > start) {
+                lastNonEmptyCount = count;
+            }
+            start = end + 1;
+        }
+        return lastNonEmptyCount;
+    }
+
+    /**
+     * Writes the parts of the key into the array, which must have room for all of them after the
+     * offset.
+     *
+     * @param partCount the result of {@link #countParts(String)} for the key
+     * @return the offset after the last part written
+     */
+    static int split(String key, int partCount, String[] parts, int offset) {
+        if (partCount == 1 && key.indexOf(KEY_SEPARATOR) < 0) {
+            parts[offset] = key;
+            return offset + 1;
+        }
+        int start = 0;
+        for (int i = 0; i < partCount; i++) {
+            int end = key.indexOf(KEY_SEPARATOR, start);
+            if (end < 0) {
+                end = key.length();
+            }
+            parts[offset + i] = key.substring(start, end);
+            start = end + 1;
+        }
+        return offset + partCount;
+    }
+
+    /**
+     * The first part of the key, which is the top-level key its entries go under.
+     */
+    static String firstPart(String key) {
+        int end = key.indexOf(KEY_SEPARATOR);
+        return end < 0 ? key : key.substring(0, end);
+    }
+
+    public int size() {
+        return parts.length;
+    }
+
+    public String getPart(int index) {
+        return parts[index];
+    }
+
+    public List<String> getParts() {
+        return Collections.unmodifiableList(Arrays.asList(parts));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DumlPath dumlPath = (DumlPath) o;
+        return Arrays.equals(parts, dumlPath.parts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(parts);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(".", parts);
+    }
+}
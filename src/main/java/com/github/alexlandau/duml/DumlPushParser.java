@@ -0,0 +1,277 @@
+package com.github.alexlandau.duml;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Parses UTF-8 encoded DUML from chunks of bytes as they arrive, for input from a channel or a
+ * reactive stream rather than all at once. Each complete line is added to the tree as soon as its
+ * chunk is fed, and only a line that continues past the end of a chunk is copied until the rest
+ * of it arrives. Lines are split on ASCII bytes, which never appear inside a multi-byte UTF-8
+ * sequence, so a character split between chunks is decoded once its line is complete.
+ *
+ * The result is the same as {@link DumlParser#parse(ByteBuffer, DumlParserOptions)} on all the
+ * bytes at once, however they are split into chunks. With a maximum line length set in the
+ * options, a partial line that grows past it fails as soon as its chunk is fed.
+ */
+//@NotThreadSafe
+public final class DumlPushParser {
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private final DumlParserOptions options;
+    private final DumlParser parser;
+    private final DumlTokenizer tokenizer;
+    private final long startTime;
+
+    // The start of a line that continued past the end of the last chunk; empty when there isn't one
+    private ByteBuffer partialLine = ByteBuffer.allocate(256);
+    //@Nullable
+    private ByteBuffer readBuffer = null;
+    private long inputSize = 0;
+    private boolean finished = false;
+
+    private DumlPushParser(DumlParserOptions options) {
+        this.options = options;
+        this.parser = new DumlParser(options);
+        this.tokenizer = new DumlTokenizer(options, StandardCharsets.UTF_8, parser::addEntry);
+        this.startTime = DumlParser.startTime(options);
+    }
+
+    public static DumlPushParser create(boolean trimValues) {
+        return new DumlPushParser(DumlParserOptions.of(trimValues));
+    }
+
+    public static DumlPushParser create(DumlParserOptions options) {
+        return new DumlPushParser(options);
+    }
+
+    /**
+     * Parses the remaining bytes of the chunk, moving its position to its limit. The chunk isn't
+     * kept, so it can be reused as soon as this returns.
+     *
+     * @throws IllegalStateException if {@link #finish()} has been called
+     */
+    public void feed(ByteBuffer chunk) {
+        checkNotFinished();
+        inputSize += chunk.remaining();
+        if (partialLine.position() > 0) {
+            int lineBreak = indexOfLineBreak(chunk);
+            // Checked before copying, so the partial line never grows past the limit
+            int lineEnd = lineBreak < 0 ? chunk.limit() : lineBreak;
+            tokenizer.checkLineLength((long) partialLine.position() + lineEnd - chunk.position());
+            if (lineBreak < 0) {
+                appendToPartialLine(chunk, chunk.limit());
+                return;
+            }
+            // Complete the line from the last chunk, and parse it on its own
+            appendToPartialLine(chunk, lineBreak + 1);
+            partialLine.flip();
+            tokenizer.tokenize(partialLine, false);
+            partialLine.clear();
+        }
+        int consumed = tokenizer.tokenize(chunk, false);
+        chunk.position(chunk.position() + consumed);
+        appendToPartialLine(chunk, chunk.limit());
+    }
+
+    /**
+     * Feeds whatever the channel has available without blocking, if it's in non-blocking mode, or
+     * else whatever one read returns.
+     *
+     * @return false if the channel has reached the end of its input, so {@link #finish()} can be
+     * called
+     */
+    public boolean readFrom(ReadableByteChannel channel) throws IOException {
+        checkNotFinished();
+        if (readBuffer == null) {
+            readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        }
+        while (true) {
+            readBuffer.clear();
+            int count = channel.read(readBuffer);
+            if (count < 0) {
+                return false;
+            }
+            readBuffer.flip();
+            feed(readBuffer);
+            if (count == 0 || readBuffer.capacity() > count) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Parses the last line, if it had no line break, and returns the result. No more chunks can be
+     * fed afterwards.
+     *
+     * @throws IllegalStateException if this has already been called
+     */
+    public DumlParseResult finish() {
+        checkNotFinished();
+        finished = true;
+        partialLine.flip();
+        tokenizer.tokenize(partialLine, true);
+        partialLine = null;
+        return parser.finish(options, inputSize, tokenizer.getLineCount(), startTime);
+    }
+
+    /**
+     * Returns a subscriber that parses the chunks it receives, one at a time, on the publisher's
+     * threads. Its result completes when the publisher completes, or exceptionally if the
+     * publisher fails or the input can't be parsed.
+     */
+    public static Subscriber subscriber(DumlParserOptions options) {
+        return new Subscriber(create(options));
+    }
+
+    /**
+     * Reads the channel to its end, feeding each chunk as it's read, without blocking a thread
+     * while waiting for input. The channel is not closed.
+     */
+    static CompletableFuture<DumlParseResult> parseAsync(AsynchronousByteChannel channel, DumlParserOptions options) {
+        return create(options).readAsync((buffer, handler) -> channel.read(buffer, null, handler));
+    }
+
+    /**
+     * Reads the file from its start to its end, feeding each chunk as it's read, without blocking
+     * a thread while waiting for input. The channel is not closed.
+     */
+    static CompletableFuture<DumlParseResult> parseAsync(AsynchronousFileChannel channel, DumlParserOptions options) {
+        DumlPushParser pushParser = create(options);
+        return pushParser.readAsync((buffer, handler) -> channel.read(buffer, pushParser.inputSize, null, handler));
+    }
+
+    private interface AsyncRead {
+        void read(ByteBuffer buffer, CompletionHandler<Integer, Void> handler);
+    }
+
+    private CompletableFuture<DumlParseResult> readAsync(AsyncRead asyncRead) {
+        CompletableFuture<DumlParseResult> result = new CompletableFuture<>();
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        CompletionHandler<Integer, Void> handler = new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer count, Void attachment) {
+                try {
+                    if (count < 0) {
+                        result.complete(finish());
+                        return;
+                    }
+                    buffer.flip();
+                    feed(buffer);
+                    buffer.clear();
+                    asyncRead.read(buffer, this);
+                } catch (RuntimeException | Error e) {
+                    result.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                result.completeExceptionally(e);
+            }
+        };
+        try {
+            asyncRead.read(buffer, handler);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private void checkNotFinished() {
+        if (finished) {
+            throw new IllegalStateException("The parse has already finished");
+        }
+    }
+
+    private static int indexOfLineBreak(ByteBuffer chunk) {
+        for (int i = chunk.position(); i < chunk.limit(); i++) {
+            byte b = chunk.get(i);
+            if (b == '\n' || b == '\r') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void appendToPartialLine(ByteBuffer chunk, int end) {
+        int length = end - chunk.position();
+        if (partialLine.remaining() < length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(partialLine.position() + length, partialLine.capacity() * 2));
+            partialLine.flip();
+            larger.put(partialLine);
+            partialLine = larger;
+        }
+        ByteBuffer part = chunk.duplicate();
+        part.limit(end);
+        partialLine.put(part);
+        chunk.position(end);
+    }
+
+    /**
+     * Parses the chunks from a {@link Flow.Publisher}, requesting one at a time.
+     */
+    public static final class Subscriber implements Flow.Subscriber<ByteBuffer> {
+        private final DumlPushParser pushParser;
+        private final CompletableFuture<DumlParseResult> result = new CompletableFuture<>();
+        //@Nullable
+        private Flow.Subscription subscription;
+
+        private Subscriber(DumlPushParser pushParser) {
+            this.pushParser = pushParser;
+        }
+
+        public CompletableFuture<DumlParseResult> getResult() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (this.subscription != null) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ByteBuffer chunk) {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                pushParser.feed(chunk);
+            } catch (RuntimeException | Error e) {
+                subscription.cancel();
+                result.completeExceptionally(e);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                result.complete(pushParser.finish());
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
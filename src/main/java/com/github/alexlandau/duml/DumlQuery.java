@@ -0,0 +1,419 @@
+package com.github.alexlandau.duml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * A compiled pattern of key paths, for finding nodes in a tree or filtering the lines of a
+ * document. A query is made of steps separated by dots:
+ * <ul>
+ *     <li>a key part, matching exactly that part;</li>
+ *     <li>{@code *}, matching any one key part;</li>
+ *     <li>{@code **}, matching any number of key parts, including none.</li>
+ * </ul>
+ * Key part and {@code *} steps can be followed by predicates in brackets, which the node they
+ * match must satisfy:
+ * <ul>
+ *     <li>{@code [=value]}: its last string is the value;</li>
+ *     <li>{@code [key]}: it has a node at the key, which may have several parts;</li>
+ *     <li>{@code [key=value]}: the last string at the key is the value.</li>
+ * </ul>
+ * For example, {@code servers.*.port} finds every server's port, {@code servers.*[region=eu]}
+ * finds the servers in one region, and {@code features.**.*[=true]} finds every key under
+ * features whose last string is "true".
+ *
+ * Queries are immutable and can be shared between threads. A query is evaluated in a single
+ * walk that keeps track of every step each node could have reached, so each matching node is
+ * found once, subtrees no step can match are skipped, and keys are looked up directly wherever
+ * only exact key parts can come next.
+ */
+public final class DumlQuery {
+    private static final int MAX_STEPS = 63;
+
+    private final String source;
+    private final Step[] steps;
+    // The state reached by matching all the steps
+    private final long finalState;
+    // The states of the ** steps, which stay in place while they match key parts
+    private final long anyDepthStates;
+
+    private DumlQuery(String source, Step[] steps) {
+        this.source = source;
+        this.steps = steps;
+        this.finalState = 1L << steps.length;
+        long anyDepthStates = 0;
+        for (int i = 0; i < steps.length; i++) {
+            if (steps[i].type == StepType.ANY_DEPTH) {
+                anyDepthStates |= 1L << i;
+            }
+        }
+        this.anyDepthStates = anyDepthStates;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the query isn't valid
+     */
+    public static DumlQuery compile(String query) {
+        List<Step> steps = new ArrayList<>();
+        int start = 0;
+        while (start <= query.length()) {
+            int end = start;
+            int depth = 0;
+            while (end < query.length() && (depth > 0 || query.charAt(end) != '.')) {
+                char c = query.charAt(end);
+                if (c == '[') {
+                    depth++;
+                } else if (c == ']') {
+                    depth--;
+                }
+                end++;
+            }
+            if (depth != 0) {
+                throw new IllegalArgumentException("Unbalanced brackets in query: " + query);
+            }
+            steps.add(Step.parse(query, query.substring(start, end)));
+            start = end + 1;
+        }
+        if (steps.size() > MAX_STEPS) {
+            throw new IllegalArgumentException("Query has more than " + MAX_STEPS + " steps: " + query);
+        }
+        return new DumlQuery(query, steps.toArray(new Step[0]));
+    }
+
+    /**
+     * Returns the matching nodes, in the order they're found by a depth-first walk following each
+     * node's key order.
+     */
+    public List<DumlNode> select(DumlNode root) {
+        List<DumlNode> nodes = new ArrayList<>();
+        forEach(root, (path, node) -> nodes.add(node));
+        return nodes;
+    }
+
+    /**
+     * Passes each matching node and its path to the consumer, in the same order as
+     * {@link #select(DumlNode)}. Nothing is allocated for nodes that don't match.
+     */
+    public void forEach(DumlNode root, BiConsumer<DumlPath, DumlNode> consumer) {
+        new Walk(consumer).visit(root, close(1L), 0);
+    }
+
+    /**
+     * Whether the key, split into parts as the parser does, matches the query's steps. Only
+     * queries without predicates can be matched against keys alone.
+     *
+     * @throws IllegalStateException if the query has predicates
+     */
+    public boolean matchesKey(CharSequence key) {
+        checkNoPredicates();
+        return matchesKey(key, null);
+    }
+
+    /**
+     * Returns a handler that passes on the entries of a document whose keys match the query, so
+     * that a large document can be filtered as it's parsed without building a tree. Comments are
+     * dropped. The only predicate allowed is a {@code [=value]} on the last step, which is
+     * checked against each line's value; note that this matches lines, so entries that a tree
+     * would later lose or that aren't the last of their key are still passed on.
+     *
+     * @throws IllegalStateException if the query has other predicates
+     */
+    public DumlHandler filter(DumlHandler downstream) {
+        for (int i = 0; i < steps.length; i++) {
+            for (Predicate predicate : steps[i].predicates) {
+                if (i != steps.length - 1 || predicate.key != null || predicate.value == null) {
+                    throw new IllegalStateException("Only a [=value] predicate on the last step can be checked against lines: " + source);
+                }
+            }
+        }
+        return (key, value, line) -> {
+            if (matchesKey(key, value)) {
+                downstream.onEntry(key, value, line);
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return source.equals(((DumlQuery) o).source);
+    }
+
+    @Override
+    public int hashCode() {
+        return source.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private void checkNoPredicates() {
+        for (Step step : steps) {
+            if (step.predicates.length > 0) {
+                throw new IllegalStateException("Predicates can't be checked against keys alone: " + source);
+            }
+        }
+    }
+
+    /**
+     * Adds the states reachable by letting each {@code **} step match no parts.
+     */
+    private long close(long states) {
+        for (int i = 0; i < steps.length; i++) {
+            if ((states & (1L << i)) != 0 && steps[i].type == StepType.ANY_DEPTH) {
+                states |= 1L << (i + 1);
+            }
+        }
+        return states;
+    }
+
+    /**
+     * The states entered from the given ones by a step matching the child at the key, before
+     * checking that step's predicates. This doesn't include the {@code **} states that a child
+     * stays in, which are {@code states & anyDepthStates}; keeping them apart means predicates are
+     * only checked on the node that a step matched, and not on everything under a {@code **}
+     * that follows it.
+     */
+    private long advance(long states, String key, int keyStart, int keyEnd, CharSequence keyChars) {
+        long next = 0;
+        for (int i = 0; i < steps.length; i++) {
+            if ((states & (1L << i)) == 0) {
+                continue;
+            }
+            Step step = steps[i];
+            switch (step.type) {
+                case ANY_DEPTH:
+                    break;
+                case ANY:
+                    next |= 1L << (i + 1);
+                    break;
+                default:
+                    if (key != null ? step.part.equals(key) : StringTable.matches(step.part, keyChars, keyStart, keyEnd)) {
+                        next |= 1L << (i + 1);
+                    }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Removes entered states whose step's predicates the node doesn't satisfy.
+     */
+    private long check(long states, DumlNode node) {
+        for (int i = 0; i < steps.length; i++) {
+            long state = 1L << (i + 1);
+            if ((states & state) != 0 && steps[i].predicates.length > 0 && !steps[i].test(node)) {
+                states &= ~state;
+            }
+        }
+        return states;
+    }
+
+    //@Nullable value: null when only matching the key
+    private boolean matchesKey(CharSequence key, CharSequence value) {
+        // Split the same way as the parser, dropping trailing empty parts
+        int partsEnd = key.length();
+        while (partsEnd > 0 && key.charAt(partsEnd - 1) == DumlPath.KEY_SEPARATOR) {
+            partsEnd--;
+        }
+        long states = close(1L);
+        int start = 0;
+        while (states != 0) {
+            int end = start;
+            while (end < partsEnd && key.charAt(end) != DumlPath.KEY_SEPARATOR) {
+                end++;
+            }
+            states = close(advance(states, null, start, end, key) | (states & anyDepthStates));
+            if (end >= partsEnd) {
+                break;
+            }
+            start = end + 1;
+        }
+        if ((states & finalState) == 0) {
+            return false;
+        }
+        if (value != null && steps.length > 0) {
+            for (Predicate predicate : steps[steps.length - 1].predicates) {
+                if (!predicate.value.contentEquals(value)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Visits children through {@link Map#forEach}, which frozen and lazy maps do without
+     * allocating entries; the fields hold the parent's states and depth during that call.
+     */
+    private final class Walk implements BiConsumer<String, DumlNode> {
+        private final BiConsumer<DumlPath, DumlNode> consumer;
+        private String[] path = new String[8];
+        private long parentStates;
+        private int parentDepth;
+
+        private Walk(BiConsumer<DumlPath, DumlNode> consumer) {
+            this.consumer = consumer;
+        }
+
+        void visit(DumlNode node, long states, int depth) {
+            if ((states & finalState) != 0) {
+                consumer.accept(DumlPath.ofParts(Arrays.copyOf(path, depth)), node);
+            }
+            long live = states & ~finalState;
+            if (live == 0 || !node.isObject()) {
+                return;
+            }
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+            }
+            Map<String, DumlNode> children = node.getMap();
+            if (onlyExactParts(live)) {
+                for (int i = 0; i < steps.length; i++) {
+                    if ((live & (1L << i)) != 0) {
+                        String part = steps[i].part;
+                        DumlNode child = children.get(part);
+                        // Another state may lead to the same part, which is visited once for both
+                        if (child != null && !isEarlierPart(live, i, part)) {
+                            visitChild(child, part, live, depth);
+                        }
+                    }
+                }
+                return;
+            }
+            parentStates = live;
+            parentDepth = depth;
+            children.forEach(this);
+        }
+
+        @Override
+        public void accept(String key, DumlNode child) {
+            long states = parentStates;
+            int depth = parentDepth;
+            visitChild(child, key, states, depth);
+            // Visiting the child's own children changed these
+            parentStates = states;
+            parentDepth = depth;
+        }
+
+        private void visitChild(DumlNode child, String key, long states, int depth) {
+            long next = close(check(advance(states, key, 0, 0, null), child) | (states & anyDepthStates));
+            if (next != 0) {
+                path[depth] = key;
+                visit(child, next, depth + 1);
+            }
+        }
+
+        private boolean onlyExactParts(long states) {
+            for (int i = 0; i < steps.length; i++) {
+                if ((states & (1L << i)) != 0 && steps[i].type != StepType.EXACT) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isEarlierPart(long states, int index, String part) {
+            for (int i = 0; i < index; i++) {
+                if ((states & (1L << i)) != 0 && steps[i].part.equals(part)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private enum StepType {
+        EXACT,
+        ANY,
+        ANY_DEPTH,
+    }
+
+    private static final class Step {
+        private final StepType type;
+        //@Nullable
+        private final String part;
+        private final Predicate[] predicates;
+
+        private Step(StepType type, String part, Predicate[] predicates) {
+            this.type = type;
+            this.part = part;
+            this.predicates = predicates;
+        }
+
+        static Step parse(String query, String step) {
+            int bracket = step.indexOf('[');
+            String name = bracket < 0 ? step : step.substring(0, bracket);
+            List<Predicate> predicates = new ArrayList<>();
+            int start = bracket;
+            while (start >= 0 && start < step.length()) {
+                int end = step.indexOf(']', start);
+                if (step.charAt(start) != '[' || end < 0) {
+                    throw new IllegalArgumentException("Bad predicate in query: " + query);
+                }
+                predicates.add(Predicate.parse(step.substring(start + 1, end)));
+                start = end + 1;
+            }
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Empty step in query: " + query);
+            }
+            if (name.equals("**")) {
+                if (!predicates.isEmpty()) {
+                    throw new IllegalArgumentException("** can't have predicates: " + query);
+                }
+                return new Step(StepType.ANY_DEPTH, null, new Predicate[0]);
+            }
+            if (name.indexOf(']') >= 0) {
+                throw new IllegalArgumentException("Bad predicate in query: " + query);
+            }
+            StepType type = name.equals("*") ? StepType.ANY : StepType.EXACT;
+            return new Step(type, type == StepType.EXACT ? name : null, predicates.toArray(new Predicate[0]));
+        }
+
+        boolean test(DumlNode node) {
+            for (Predicate predicate : predicates) {
+                if (!predicate.test(node)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Predicate {
+        // Null to test the node itself
+        //@Nullable
+        private final DumlPath key;
+        // Null to test that the key exists
+        //@Nullable
+        private final String value;
+
+        private Predicate(DumlPath key, String value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        static Predicate parse(String predicate) {
+            int equals = predicate.indexOf('=');
+            if (equals < 0) {
+                return new Predicate(DumlPath.of(predicate), null);
+            }
+            String value = predicate.substring(equals + 1);
+            return new Predicate(equals == 0 ? null : DumlPath.of(predicate.substring(0, equals)), value);
+        }
+
+        boolean test(DumlNode node) {
+            DumlNode target = key == null ? node : node.get(key);
+            if (target == null) {
+                return false;
+            }
+            return value == null || value.equals(target.getLastString());
+        }
+    }
+}
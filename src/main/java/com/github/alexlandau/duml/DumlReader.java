@@ -0,0 +1,341 @@
+package com.github.alexlandau.duml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * A cursor over the entries of a DUML document, read one line at a time. Comments and blank lines
+ * are skipped.
+ *
+ * The {@link CharSequence}s returned by the accessors are views into the reader's buffer, and are
+ * only valid until the next call to {@link #next()}. Call {@link CharSequence#toString()} to keep
+ * a copy. Reading can be stopped at any point by closing the reader.
+ */
+//@NotThreadSafe
+public final class DumlReader implements Closeable {
+    private static final char NEWLINE_N = '\n';
+    private static final char NEWLINE_R = '\r';
+    private static final char SPACE = ' ';
+    private static final char TAB = '\t';
+    private static final char COMMENT = '#';
+    private static final char KEY_SEPARATOR = '.';
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final boolean trimValues;
+    private final int maxLineLength;
+
+    private char[] buffer = new char[DEFAULT_BUFFER_SIZE];
+    // The unread characters in the buffer are those in [position, limit)
+    private int position = 0;
+    private int limit = 0;
+    private boolean endOfInput = false;
+
+    private long nextLineNumber = 1;
+    private boolean afterCarriageReturn = false;
+    private boolean endedWithoutLineBreak = false;
+
+    // The current line
+    private long lineNumber = 0;
+    private boolean isComment = false;
+    private final CharSlice key = new CharSlice();
+    private final CharSlice value = new CharSlice();
+    // Start offsets of the key parts, plus one past the end of the last part; computed on demand
+    private int[] keyPartBounds = new int[8];
+    private int keyPartCount = -1;
+    private CharSlice[] keyParts = new CharSlice[0];
+
+    private DumlReader(Reader reader, boolean trimValues, int maxLineLength) {
+        this.reader = reader;
+        this.trimValues = trimValues;
+        this.maxLineLength = maxLineLength;
+    }
+
+    public static DumlReader of(Reader reader, boolean trimValues) {
+        return new DumlReader(reader, trimValues, Integer.MAX_VALUE);
+    }
+
+    public static DumlReader of(String dumlText, boolean trimValues) {
+        return new DumlReader(new StringReader(dumlText), trimValues, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @see DumlParserOptions.Builder#maxLineLength(int)
+     */
+    static DumlReader of(Reader reader, boolean trimValues, int maxLineLength) {
+        return new DumlReader(reader, trimValues, maxLineLength);
+    }
+
+    /**
+     * Advances to the next entry.
+     *
+     * @return false if there are no more entries
+     */
+    public boolean next() throws IOException {
+        return advance(false);
+    }
+
+    /**
+     * Advances to the next entry, or to the next comment if stopAtComments is set.
+     */
+    boolean advance(boolean stopAtComments) throws IOException {
+        int scanFrom = position;
+        while (true) {
+            int lineStart = position;
+            int lineEnd = scanFrom;
+            while (lineEnd < limit && buffer[lineEnd] != NEWLINE_N && buffer[lineEnd] != NEWLINE_R) {
+                lineEnd++;
+            }
+            if (lineEnd - lineStart > maxLineLength) {
+                // Checked before reading any more of the line, so the buffer stops growing
+                throw new DumlLimitException(DumlLimitException.Limit.LINE_LENGTH, maxLineLength, nextLineNumber);
+            }
+            if (lineEnd == limit && !endOfInput) {
+                fill();
+                // The partial line has moved to the start of the buffer
+                scanFrom = lineEnd - lineStart;
+                continue;
+            }
+            if (lineStart == limit) {
+                // This is the end of the input, and there isn't even an empty line left
+                lineNumber = 0;
+                return false;
+            }
+
+            lineNumber = nextLineNumber;
+            boolean hasTerminator = lineEnd < limit;
+            if (hasTerminator) {
+                char terminator = buffer[lineEnd];
+                // A \r\n pair only counts as one line break
+                if (!(terminator == NEWLINE_N && lineStart == lineEnd && afterCarriageReturn)) {
+                    nextLineNumber++;
+                }
+                afterCarriageReturn = terminator == NEWLINE_R;
+                position = lineEnd + 1;
+            } else {
+                position = lineEnd;
+                endedWithoutLineBreak = true;
+            }
+            scanFrom = position;
+
+            if (lineStart == lineEnd) {
+                continue;
+            }
+            if (buffer[lineStart] == COMMENT) {
+                if (stopAtComments) {
+                    isComment = true;
+                    key.set(buffer, lineStart, lineStart);
+                    value.set(buffer, lineStart + 1, lineEnd);
+                    keyPartCount = -1;
+                    return true;
+                }
+                continue;
+            }
+            isComment = false;
+            int keyEnd = lineStart;
+            while (keyEnd < lineEnd && buffer[keyEnd] != SPACE && buffer[keyEnd] != TAB) {
+                keyEnd++;
+            }
+            key.set(buffer, lineStart, keyEnd);
+            keyPartCount = -1;
+            if (keyEnd == lineEnd) {
+                // The line ends with no separator, so this is a key with an empty value
+                value.set(buffer, lineEnd, lineEnd);
+                return true;
+            }
+
+            int valueStart = keyEnd + 1;
+            int valueEnd = lineEnd;
+            if (trimValues) {
+                // Matches String.trim()
+                while (valueStart < valueEnd && buffer[valueStart] <= SPACE) {
+                    valueStart++;
+                }
+                while (valueEnd > valueStart && buffer[valueEnd - 1] <= SPACE) {
+                    valueEnd--;
+                }
+            }
+            value.set(buffer, valueStart, valueEnd);
+            return true;
+        }
+    }
+
+    /**
+     * Moves the unread characters to the start of the buffer, growing it if it's already full, and
+     * reads more input after them.
+     */
+    private void fill() throws IOException {
+        int remaining = limit - position;
+        if (position == 0 && limit == buffer.length) {
+            char[] newBuffer = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, newBuffer, 0, remaining);
+            buffer = newBuffer;
+        } else if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        position = 0;
+        limit = remaining;
+
+        int charsRead = reader.read(buffer, limit, buffer.length - limit);
+        while (charsRead == 0) {
+            charsRead = reader.read(buffer, limit, buffer.length - limit);
+        }
+        if (charsRead < 0) {
+            endOfInput = true;
+        } else {
+            limit += charsRead;
+        }
+    }
+
+    /**
+     * The number of lines read so far, including blank lines and comments.
+     */
+    long lineCount() {
+        return nextLineNumber - 1 + (endedWithoutLineBreak ? 1 : 0);
+    }
+
+    // Only true when reading with comments included
+    boolean isComment() {
+        return isComment;
+    }
+
+    /**
+     * The full dotted key of the current entry.
+     */
+    public CharSequence key() {
+        checkHasLine();
+        return key;
+    }
+
+    /**
+     * The value of the current entry, or the text after the '#' of a comment. This is empty if the
+     * line had no value.
+     */
+    public CharSequence value() {
+        checkHasLine();
+        return value;
+    }
+
+    /**
+     * The line number of the current entry, starting from 1.
+     */
+    public long line() {
+        checkHasLine();
+        return lineNumber;
+    }
+
+    /**
+     * The number of parts in the current key, split on '.' the same way as when building a tree.
+     */
+    public int keyPartCount() {
+        checkHasLine();
+        if (keyPartCount < 0) {
+            splitKey();
+        }
+        return keyPartCount;
+    }
+
+    /**
+     * The given part of the current key.
+     */
+    public CharSequence keyPart(int index) {
+        if (index < 0 || index >= keyPartCount()) {
+            throw new IndexOutOfBoundsException("Key part " + index + " of " + keyPartCount);
+        }
+        if (index >= keyParts.length) {
+            CharSlice[] newKeyParts = new CharSlice[Math.max(index + 1, keyParts.length * 2)];
+            System.arraycopy(keyParts, 0, newKeyParts, 0, keyParts.length);
+            for (int i = keyParts.length; i < newKeyParts.length; i++) {
+                newKeyParts[i] = new CharSlice();
+            }
+            keyParts = newKeyParts;
+        }
+        CharSlice keyPart = keyParts[index];
+        // The bounds include the separator before each part after the first
+        int start = index == 0 ? keyPartBounds[0] : keyPartBounds[index] + 1;
+        keyPart.set(buffer, start, keyPartBounds[index + 1]);
+        return keyPart;
+    }
+
+    private void splitKey() {
+        // Follows the rules of key.split("\\."): trailing empty parts are dropped, unless the key
+        // is empty altogether
+        int start = key.start;
+        int end = key.start + key.length;
+        int count = 0;
+        keyPartBounds[0] = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || buffer[i] == KEY_SEPARATOR) {
+                if (count + 2 > keyPartBounds.length) {
+                    int[] newBounds = new int[keyPartBounds.length * 2];
+                    System.arraycopy(keyPartBounds, 0, newBounds, 0, keyPartBounds.length);
+                    keyPartBounds = newBounds;
+                }
+                keyPartBounds[++count] = i;
+            }
+        }
+        if (end > start) {
+            while (count > 0 && isEmptyKeyPart(count - 1)) {
+                count--;
+            }
+        }
+        keyPartCount = count;
+    }
+
+    private boolean isEmptyKeyPart(int index) {
+        int start = index == 0 ? keyPartBounds[0] : keyPartBounds[index] + 1;
+        return start == keyPartBounds[index + 1];
+    }
+
+    private void checkHasLine() {
+        if (lineNumber == 0) {
+            throw new IllegalStateException("There is no current entry; next() must return true first");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * A reusable view of part of the buffer.
+     */
+    private static final class CharSlice implements CharSequence {
+        private char[] chars;
+        private int start;
+        private int length;
+
+        void set(char[] chars, int start, int end) {
+            this.chars = chars;
+            this.start = start;
+            this.length = end - start;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(Integer.toString(index));
+            }
+            return chars[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, start, length);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.alexlandau.duml;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current version of a parsed DUML document for any number of reader threads. Every
+ * result is frozen when it's stored, so readers can use it without locks or copying, and a reload
+ * replaces the whole result at once; readers holding the old version are unaffected.
+ */
+//@ThreadSafe
+public final class DumlSnapshot {
+    private final AtomicReference<DumlParseResult> current;
+
+    private DumlSnapshot(DumlParseResult initial) {
+        this.current = new AtomicReference<>(initial.freeze());
+    }
+
+    public static DumlSnapshot of(DumlParseResult initial) {
+        return new DumlSnapshot(initial);
+    }
+
+    /**
+     * The current frozen result.
+     */
+    public DumlParseResult get() {
+        return current.get();
+    }
+
+    /**
+     * The tree of the current frozen result.
+     */
+    public DumlNode getDuml() {
+        return current.get().getDuml();
+    }
+
+    /**
+     * Replaces the current result.
+     *
+     * @return the frozen result that was replaced
+     */
+    public DumlParseResult set(DumlParseResult newResult) {
+        return current.getAndSet(newResult.freeze());
+    }
+
+    /**
+     * Replaces the current result only if it is still the expected one, as returned by
+     * {@link #get()}. Useful when several threads may try to reload at once.
+     */
+    public boolean compareAndSet(DumlParseResult expected, DumlParseResult newResult) {
+        return current.compareAndSet(expected, newResult.freeze());
+    }
+
+    @Override
+    public String toString() {
+        return "DumlSnapshot[" + current.get() + "]";
+    }
+}
@@ -0,0 +1,287 @@
+package com.github.alexlandau.duml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits DUML text into comments, keys, and values, and passes them to a {@link DumlHandler}.
+ * Text from a {@link Reader} is split by a {@link DumlReader}; bytes are split in place here,
+ * following the same rules.
+ */
+final class DumlTokenizer {
+    private static final int NEWLINE_N = '\n';
+    private static final int NEWLINE_R = '\r';
+    private static final int SPACE = ' ';
+    private static final int TAB = '\t';
+    private static final int COMMENT = '#';
+
+    private final boolean trimValues;
+    private final Charset charset;
+    private final DumlHandler handler;
+    private final int maxLineLength;
+
+    private long lineNumber = 1;
+    private boolean afterCarriageReturn = false;
+    private boolean endedWithoutLineBreak = false;
+    // Set when reading from a Reader, which keeps track of lines itself
+    private DumlReader lines;
+
+    // Reused for each line read from bytes
+    private final ByteSlice keySlice = new ByteSlice();
+    private final ByteSlice valueSlice = new ByteSlice();
+    private CharsetDecoder decoder;
+
+    DumlTokenizer(boolean trimValues, Charset charset, DumlHandler handler) {
+        this(trimValues, charset, Integer.MAX_VALUE, handler);
+    }
+
+    DumlTokenizer(DumlParserOptions options, Charset charset, DumlHandler handler) {
+        this(options.isTrimValues(), charset, options.getMaxLineLength(), handler);
+    }
+
+    private DumlTokenizer(boolean trimValues, Charset charset, int maxLineLength, DumlHandler handler) {
+        this.trimValues = trimValues;
+        this.charset = charset;
+        this.maxLineLength = maxLineLength;
+        this.handler = handler;
+    }
+
+    /**
+     * Whether the delimiter characters are single ASCII bytes in this charset that can never
+     * appear inside the encoding of some other character, so the raw bytes can be split on them.
+     */
+    static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    void tokenize(Reader reader) throws IOException {
+        lines = DumlReader.of(reader, trimValues, maxLineLength);
+        while (lines.advance(true)) {
+            if (lines.isComment()) {
+                handler.onComment(lines.value(), lines.line());
+            } else {
+                handler.onEntry(lines.key(), lines.value(), lines.line());
+            }
+        }
+    }
+
+    /**
+     * The number of lines read so far, including blank lines and comments.
+     */
+    long getLineCount() {
+        if (lines != null) {
+            return lines.lineCount();
+        }
+        return lineNumber - 1 + (endedWithoutLineBreak ? 1 : 0);
+    }
+
+    /**
+     * Checks the length of a line, or of the start of one that continues past what's been read.
+     */
+    void checkLineLength(long length) {
+        if (length > maxLineLength) {
+            throw new DumlLimitException(DumlLimitException.Limit.LINE_LENGTH, maxLineLength, lineNumber);
+        }
+    }
+
+    private void endLine(int lineTerminator, boolean emptyLine) {
+        // A \r\n pair only counts as one line break
+        if (!(lineTerminator == NEWLINE_N && emptyLine && afterCarriageReturn)) {
+            lineNumber++;
+        }
+        afterCarriageReturn = lineTerminator == NEWLINE_R;
+    }
+
+    /**
+     * Processes each line in the remaining bytes of the buffer. Unless this is the end of the
+     * input, a trailing line with no line break is left alone, as it may continue past the end
+     * of the buffer.
+     *
+     * @return the number of bytes processed, counting from the buffer's position
+     */
+    int tokenize(ByteBuffer buffer, boolean endOfInput) {
+        // The line, key, and value delimiters are all ASCII, and UTF-8 never uses ASCII bytes
+        // inside a multi-byte sequence, so lines can be split up without decoding anything
+        int end = buffer.limit();
+        int lineStart = buffer.position();
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            int highBits = 0;
+            while (lineEnd < end) {
+                byte b = buffer.get(lineEnd);
+                if (b == NEWLINE_N || b == NEWLINE_R) {
+                    break;
+                }
+                highBits |= b;
+                lineEnd++;
+            }
+            checkLineLength(lineEnd - lineStart);
+            if (lineEnd == end && !endOfInput) {
+                return lineStart - buffer.position();
+            }
+            processLine(buffer, lineStart, lineEnd, highBits >= 0);
+            if (lineEnd == end) {
+                endedWithoutLineBreak = true;
+                break;
+            }
+            endLine(buffer.get(lineEnd), lineStart == lineEnd);
+            lineStart = lineEnd + 1;
+        }
+        return end - buffer.position();
+    }
+
+    private void processLine(ByteBuffer buffer, int lineStart, int lineEnd, boolean asciiLine) {
+        if (lineStart == lineEnd) {
+            return;
+        }
+        if (buffer.get(lineStart) == COMMENT) {
+            handler.onComment(slice(valueSlice, buffer, lineStart + 1, lineEnd, asciiLine), lineNumber);
+            return;
+        }
+        int keyEnd = lineStart;
+        while (keyEnd < lineEnd) {
+            byte b = buffer.get(keyEnd);
+            if (b == SPACE || b == TAB) {
+                break;
+            }
+            keyEnd++;
+        }
+        CharSequence key = slice(keySlice, buffer, lineStart, keyEnd, asciiLine);
+        if (keyEnd == lineEnd) {
+            // The line ends with no separator, so this is a key with an empty value
+            handler.onEntry(key, slice(valueSlice, buffer, lineEnd, lineEnd, true), lineNumber);
+            return;
+        }
+
+        int valueStart = keyEnd + 1;
+        int valueEnd = lineEnd;
+        if (trimValues) {
+            // Matches String.trim(), which treats every character up to and including the space
+            // as whitespace; those are all single bytes in the charsets read this way
+            while (valueStart < valueEnd && (buffer.get(valueStart) & 0xFF) <= SPACE) {
+                valueStart++;
+            }
+            while (valueEnd > valueStart && (buffer.get(valueEnd - 1) & 0xFF) <= SPACE) {
+                valueEnd--;
+            }
+        }
+        handler.onEntry(key, slice(valueSlice, buffer, valueStart, valueEnd, asciiLine), lineNumber);
+    }
+
+    private CharSequence slice(ByteSlice slice, ByteBuffer buffer, int start, int end, boolean asciiLine) {
+        if (asciiLine || isAscii(buffer, start, end)) {
+            slice.setAscii(buffer, start, end);
+        } else {
+            if (decoder == null) {
+                decoder = charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+            slice.decode(decoder, buffer, start, end);
+        }
+        return slice;
+    }
+
+    private static boolean isAscii(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A reusable view of part of a byte buffer as characters. ASCII bytes are read in place;
+     * anything else is decoded into a reusable char buffer first.
+     */
+    private static final class ByteSlice implements CharSequence {
+        private ByteBuffer bytes;
+        private int start;
+        private int length;
+        // Null when the current slice is ASCII
+        private CharBuffer decoded;
+
+        private ByteBuffer decoderInput;
+        private ByteBuffer decoderInputSource;
+        private CharBuffer decodedStorage;
+        private byte[] copyBuffer = new byte[0];
+
+        void setAscii(ByteBuffer bytes, int start, int end) {
+            this.bytes = bytes;
+            this.start = start;
+            this.length = end - start;
+            this.decoded = null;
+        }
+
+        void decode(CharsetDecoder decoder, ByteBuffer bytes, int start, int end) {
+            if (bytes != decoderInputSource) {
+                decoderInput = bytes.duplicate();
+                decoderInputSource = bytes;
+            }
+            this.bytes = bytes;
+            int maxChars = (int) Math.ceil((end - start) * (double) decoder.maxCharsPerByte());
+            if (decodedStorage == null || decodedStorage.capacity() < maxChars) {
+                decodedStorage = CharBuffer.allocate(Math.max(maxChars, 16));
+            }
+            decoderInput.limit(end);
+            decoderInput.position(start);
+            decodedStorage.clear();
+            decoder.reset();
+            decoder.decode(decoderInput, decodedStorage, true);
+            decoder.flush(decodedStorage);
+            decodedStorage.flip();
+            this.decoded = decodedStorage;
+            this.length = decodedStorage.remaining();
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(Integer.toString(index));
+            }
+            if (decoded != null) {
+                return decoded.get(index);
+            }
+            return (char) bytes.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            if (decoded != null) {
+                return decoded.toString();
+            }
+            if (length == 0) {
+                return "";
+            }
+            if (bytes.hasArray()) {
+                return new String(bytes.array(), bytes.arrayOffset() + start, length, StandardCharsets.ISO_8859_1);
+            }
+            if (copyBuffer.length < length) {
+                copyBuffer = new byte[Math.max(length, copyBuffer.length * 2)];
+            }
+            ByteBuffer source = bytes.duplicate();
+            source.position(start);
+            source.get(copyBuffer, 0, length);
+            return new String(copyBuffer, 0, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.github.alexlandau.duml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Writes a DUML tree as text: one "dotted.key value" line for each string, in the order of the
+ * tree, so parsing the text again gives an equal tree. Object nodes with no children and strings
+ * nodes with no strings have no lines to write, so they are left out.
+ *
+ * The key of the current node is kept in a buffer that only changes when moving between nodes,
+ * and values are copied or encoded straight into the output buffer, so writing a string doesn't
+ * allocate anything.
+ *
+ * Keys that couldn't be parsed back into the same parts, and values with line breaks, can't be
+ * written and cause an {@link IllegalArgumentException}. Text that starts with whitespace is
+ * written as-is, so it only survives parsing if values aren't trimmed.
+ */
+public final class DumlWriter {
+    private static final char NEWLINE = '\n';
+    private static final char SPACE = ' ';
+    private static final char TAB = '\t';
+    private static final char COMMENT = '#';
+    private static final char KEY_SEPARATOR = '.';
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Output output;
+    private final BiConsumer<String, DumlNode> childWriter = this::writeChild;
+    // The length of the key buffer before each key part on the current path was added
+    private int[] prefixLengths = new int[8];
+    private int depth = 0;
+
+    private DumlWriter(Output output) {
+        this.output = output;
+    }
+
+    public static String toString(DumlNode node) {
+        StringBuilder text = new StringBuilder();
+        new DumlWriter(new CharOutput(text::append)).run(node);
+        return text.toString();
+    }
+
+    /**
+     * Writes the tree to the writer, which is flushed but not closed.
+     */
+    public static void write(DumlNode node, Writer writer) throws IOException {
+        try {
+            new DumlWriter(new CharOutput(writer::write)).run(node);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes the tree to the stream as UTF-8. The stream is flushed but not closed.
+     */
+    public static void write(DumlNode node, OutputStream stream) throws IOException {
+        try {
+            new DumlWriter(new ByteOutput(stream::write)).run(node);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        stream.flush();
+    }
+
+    /**
+     * Writes the tree to the buffer as UTF-8, starting at its position.
+     *
+     * @throws java.nio.BufferOverflowException if the text doesn't fit in the buffer's remaining
+     *     space
+     */
+    public static void write(DumlNode node, ByteBuffer buffer) {
+        new DumlWriter(new ByteOutput(buffer::put)).run(node);
+    }
+
+    private void run(DumlNode node) {
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Only object nodes can be written, since strings need a key");
+        }
+        node.getMap().forEach(childWriter);
+        output.flush();
+    }
+
+    /**
+     * Writes one child of the current object node.
+     */
+    private void writeChild(String keyPart, DumlNode child) {
+        checkKeyPart(keyPart);
+        if (depth + 1 == prefixLengths.length) {
+            prefixLengths = Arrays.copyOf(prefixLengths, prefixLengths.length * 2);
+        }
+        prefixLengths[depth] = output.keyLength();
+        if (depth > 0) {
+            output.appendKey(KEY_SEPARATOR);
+        }
+        output.appendKey(keyPart);
+        depth++;
+
+        if (child.isObject()) {
+            child.getMap().forEach(childWriter);
+        } else {
+            writeStrings(keyPart, child.getStrings());
+        }
+
+        depth--;
+        output.truncateKey(prefixLengths[depth]);
+    }
+
+    private void writeStrings(String lastKeyPart, List<String> strings) {
+        if (strings.isEmpty()) {
+            return;
+        }
+        if (depth > 1 && lastKeyPart.isEmpty()) {
+            // Trailing empty parts are dropped when keys are split
+            throw new IllegalArgumentException("Can't write a key ending with an empty part after " + output.keyToString());
+        }
+        boolean emptyKey = output.keyLength() == 0;
+        for (int i = 0; i < strings.size(); i++) {
+            String value = strings.get(i);
+            checkValue(value);
+            // An empty key needs the separator, or the line would be blank and skipped
+            output.writeLine(value, emptyKey || !value.isEmpty());
+        }
+    }
+
+    private void checkKeyPart(String keyPart) {
+        if (depth == 0 && !keyPart.isEmpty() && keyPart.charAt(0) == COMMENT) {
+            throw new IllegalArgumentException("Can't write a key starting with '#', as it would be read as a comment: " + keyPart);
+        }
+        for (int i = 0; i < keyPart.length(); i++) {
+            char c = keyPart.charAt(i);
+            if (c == KEY_SEPARATOR || c == SPACE || c == TAB || c == NEWLINE || c == '\r') {
+                throw new IllegalArgumentException("Can't write a key part containing '.', whitespace, or line breaks: " + keyPart);
+            }
+        }
+    }
+
+    private void checkValue(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == NEWLINE || c == '\r') {
+                throw new IllegalArgumentException("Can't write a value containing line breaks under " + output.keyToString() + ": " + value);
+            }
+        }
+    }
+
+    private interface CharSink {
+        void write(char[] chars, int offset, int length) throws IOException;
+    }
+
+    private interface ByteSink {
+        void write(byte[] bytes, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Holds the key of the current node and buffers the output.
+     */
+    private static abstract class Output {
+        abstract int keyLength();
+        abstract void appendKey(char c);
+        abstract void appendKey(String keyPart);
+        abstract void truncateKey(int length);
+        abstract String keyToString();
+        /**
+         * Writes the current key, then the separator and value if asked, then a line break.
+         */
+        abstract void writeLine(String value, boolean withSeparator);
+        abstract void flush();
+    }
+
+    private static final class CharOutput extends Output {
+        private final CharSink sink;
+        private char[] key = new char[64];
+        private int keyLength = 0;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int count = 0;
+
+        private CharOutput(CharSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        int keyLength() {
+            return keyLength;
+        }
+
+        @Override
+        void appendKey(char c) {
+            ensureKeyCapacity(keyLength + 1);
+            key[keyLength++] = c;
+        }
+
+        @Override
+        void appendKey(String keyPart) {
+            ensureKeyCapacity(keyLength + keyPart.length());
+            keyPart.getChars(0, keyPart.length(), key, keyLength);
+            keyLength += keyPart.length();
+        }
+
+        private void ensureKeyCapacity(int capacity) {
+            if (capacity > key.length) {
+                key = Arrays.copyOf(key, Math.max(capacity, key.length * 2));
+            }
+        }
+
+        @Override
+        void truncateKey(int length) {
+            keyLength = length;
+        }
+
+        @Override
+        String keyToString() {
+            return new String(key, 0, keyLength);
+        }
+
+        @Override
+        void writeLine(String value, boolean withSeparator) {
+            write(key, keyLength);
+            if (withSeparator) {
+                write(SPACE);
+                int written = 0;
+                while (written < value.length()) {
+                    if (count == buffer.length) {
+                        flush();
+                    }
+                    int length = Math.min(value.length() - written, buffer.length - count);
+                    value.getChars(written, written + length, buffer, count);
+                    count += length;
+                    written += length;
+                }
+            }
+            write(NEWLINE);
+        }
+
+        private void write(char c) {
+            if (count == buffer.length) {
+                flush();
+            }
+            buffer[count++] = c;
+        }
+
+        private void write(char[] chars, int length) {
+            if (length > buffer.length - count) {
+                flush();
+                if (length > buffer.length) {
+                    writeToSink(chars, length);
+                    return;
+                }
+            }
+            System.arraycopy(chars, 0, buffer, count, length);
+            count += length;
+        }
+
+        @Override
+        void flush() {
+            writeToSink(buffer, count);
+            count = 0;
+        }
+
+        private void writeToSink(char[] chars, int length) {
+            try {
+                sink.write(chars, 0, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Encodes the output as UTF-8. As with {@link String#getBytes(java.nio.charset.Charset)},
+     * unpaired surrogates are written as '?'.
+     */
+    private static final class ByteOutput extends Output {
+        private final ByteSink sink;
+        private byte[] key = new byte[64];
+        private int keyLength = 0;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int count = 0;
+
+        private ByteOutput(ByteSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        int keyLength() {
+            return keyLength;
+        }
+
+        @Override
+        void appendKey(char c) {
+            ensureKeyCapacity(keyLength + 1);
+            key[keyLength++] = (byte) c;
+        }
+
+        @Override
+        void appendKey(String keyPart) {
+            // Each char takes at most three bytes, and surrogate pairs take four bytes for two chars
+            ensureKeyCapacity(keyLength + keyPart.length() * 3);
+            keyLength = encode(keyPart, 0, keyPart.length(), key, keyLength);
+        }
+
+        private void ensureKeyCapacity(int capacity) {
+            if (capacity > key.length) {
+                key = Arrays.copyOf(key, Math.max(capacity, key.length * 2));
+            }
+        }
+
+        @Override
+        void truncateKey(int length) {
+            keyLength = length;
+        }
+
+        @Override
+        String keyToString() {
+            return new String(key, 0, keyLength, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        void writeLine(String value, boolean withSeparator) {
+            write(key, keyLength);
+            if (withSeparator) {
+                write((byte) SPACE);
+                int written = 0;
+                while (written < value.length()) {
+                    if (buffer.length - count < 6) {
+                        // Room for at least two chars, so a surrogate pair can always fit
+                        flush();
+                    }
+                    int length = Math.min(value.length() - written, (buffer.length - count) / 3);
+                    if (written + length < value.length() && Character.isHighSurrogate(value.charAt(written + length - 1))) {
+                        // Don't split a surrogate pair between chunks
+                        length--;
+                    }
+                    count = encode(value, written, written + length, buffer, count);
+                    written += length;
+                }
+            }
+            write((byte) NEWLINE);
+        }
+
+        /**
+         * Encodes the chars from start to end into the array, which must have room for them.
+         *
+         * @return the offset after the last byte written
+         */
+        private static int encode(String s, int start, int end, byte[] bytes, int offset) {
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    bytes[offset++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[offset++] = (byte) (0xC0 | (c >> 6));
+                    bytes[offset++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                        bytes[offset++] = (byte) (0xF0 | (codePoint >> 18));
+                        bytes[offset++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                        bytes[offset++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                        bytes[offset++] = (byte) (0x80 | (codePoint & 0x3F));
+                    } else {
+                        bytes[offset++] = '?';
+                    }
+                } else {
+                    bytes[offset++] = (byte) (0xE0 | (c >> 12));
+                    bytes[offset++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[offset++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return offset;
+        }
+
+        private void write(byte b) {
+            if (count == buffer.length) {
+                flush();
+            }
+            buffer[count++] = b;
+        }
+
+        private void write(byte[] bytes, int length) {
+            if (length > buffer.length - count) {
+                flush();
+                if (length > buffer.length) {
+                    writeToSink(bytes, length);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, count, length);
+            count += length;
+        }
+
+        @Override
+        void flush() {
+            writeToSink(buffer, count);
+            count = 0;
+        }
+
+        private void writeToSink(byte[] bytes, int length) {
+            try {
+                sink.write(bytes, 0, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.github.alexlandau.duml;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * The immutable contents of a frozen {@link DumlNode.DumlObjectNode}. Keys and values are kept in
+ * insertion order in exact-size arrays, with an open-addressed table of indices for lookups in
+ * larger maps. Equal to any other map with the same entries.
+ */
+final class FrozenMap extends AbstractMap<String, DumlNode> {
+    // Maps with this many entries or fewer are searched linearly, without an index table
+    private static final int MAX_LINEAR_SIZE = 8;
+
+    private final String[] keys;
+    private final DumlNode[] values;
+    // Slots hold an index into keys plus one, or zero if empty; null for small maps
+    private final int[] table;
+    // Computed when first needed, like String's; zero until then, and racy but never wrong
+    private int hashCode = 0;
+
+    FrozenMap(String[] keys, DumlNode[] values) {
+        this.keys = keys;
+        this.values = values;
+        this.table = keys.length > MAX_LINEAR_SIZE ? buildTable(keys) : null;
+    }
+
+    private static int[] buildTable(String[] keys) {
+        int[] table = new int[Integer.highestOneBit(keys.length * 2 - 1) << 1];
+        int mask = table.length - 1;
+        for (int i = 0; i < keys.length; i++) {
+            int slot = spread(keys[i].hashCode()) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+        return table;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        if (table == null) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = table.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (keys[entry - 1].equals(key)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public DumlNode get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Compares entry by entry, in order where both maps have the same keys in the same order,
+     * after checking the remembered hash codes.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FrozenMap)) {
+            return super.equals(o);
+        }
+        FrozenMap that = (FrozenMap) o;
+        if (keys.length != that.keys.length || hashCode() != that.hashCode()) {
+            return false;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            DumlNode thatValue = keys[i].equals(that.keys[i]) ? that.values[i] : that.get(keys[i]);
+            if (thatValue == null || !values[i].equals(thatValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = hashCode;
+        if (hash == 0) {
+            // The same as AbstractMap's
+            for (int i = 0; i < keys.length; i++) {
+                hash += keys[i].hashCode() ^ values[i].hashCode();
+            }
+            hashCode = hash;
+        }
+        return hash;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super DumlNode> action) {
+        for (int i = 0; i < keys.length; i++) {
+            action.accept(keys[i], values[i]);
+        }
+    }
+
+    @Override
+    public Set<Entry<String, DumlNode>> entrySet() {
+        return new AbstractSet<Entry<String, DumlNode>>() {
+            @Override
+            public Iterator<Entry<String, DumlNode>> iterator() {
+                return new Iterator<Entry<String, DumlNode>>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, DumlNode> next() {
+                        if (next >= keys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, DumlNode> entry = new SimpleImmutableEntry<>(keys[next], values[next]);
+                        next++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+}
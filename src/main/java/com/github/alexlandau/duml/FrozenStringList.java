@@ -0,0 +1,84 @@
+package com.github.alexlandau.duml;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The immutable strings of a frozen {@link DumlNode.DumlStringsNode}. A single string is stored
+ * directly; more are stored in an exact-size array. Equal to any other list with the same strings.
+ */
+final class FrozenStringList extends AbstractList<String> implements RandomAccess {
+    private static final String[] NO_STRINGS = new String[0];
+
+    // Either a String or a String[]
+    private final Object strings;
+    // Computed when first needed, like String's; zero until then, and racy but never wrong
+    private int hashCode = 0;
+
+    private FrozenStringList(Object strings) {
+        this.strings = strings;
+    }
+
+    static FrozenStringList copyOf(List<String> strings) {
+        if (strings.size() == 1) {
+            return new FrozenStringList(strings.get(0));
+        }
+        return new FrozenStringList(strings.isEmpty() ? NO_STRINGS : strings.toArray(new String[0]));
+    }
+
+    /**
+     * Uses the array itself, which must not be modified afterwards.
+     */
+    static FrozenStringList wrap(String[] strings) {
+        return new FrozenStringList(strings.length == 1 ? strings[0] : strings);
+    }
+
+    @Override
+    public String get(int index) {
+        if (strings instanceof String) {
+            if (index != 0) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: 1");
+            }
+            return (String) strings;
+        }
+        return ((String[]) strings)[index];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o instanceof FrozenStringList) {
+            FrozenStringList that = (FrozenStringList) o;
+            if (strings == that.strings) {
+                return true;
+            }
+            if (size() != that.size() || hashCode() != that.hashCode()) {
+                return false;
+            }
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = hashCode;
+        if (hash == 0) {
+            // The same as AbstractList's
+            hash = 1;
+            for (int i = 0; i < size(); i++) {
+                hash = 31 * hash + get(i).hashCode();
+            }
+            hashCode = hash;
+        }
+        return hash;
+    }
+
+    @Override
+    public int size() {
+        if (strings instanceof String) {
+            return 1;
+        }
+        return ((String[]) strings).length;
+    }
+}
@@ -0,0 +1,414 @@
+package com.github.alexlandau.duml;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * The read-only contents of an object node in a tree from {@link DumlParser#parseLazy}, built on
+ * demand from the lines of UTF-8 encoded DUML that have keys under this node.
+ *
+ * The node at a key is decided by the lines whose keys start with it: if the last of these is
+ * exactly the key, the node holds the values of the run of such lines at the end; otherwise it's
+ * an object built from the lines after the last line that is exactly the key, if any, since
+ * everything before that was lost. So each level only needs to look at its own lines, and its
+ * keys are only decoded once the map is used, and its children's values once they are reached.
+ * Lost nodes depend on the whole document, so they're found with a full parse when first asked
+ * for.
+ *
+ * Each line is tracked by the end of its key and by the position of the '.' before the next key
+ * part that hasn't been consumed yet. Materialized nodes are kept, and safe to share between
+ * threads.
+ */
+final class LazyMap extends AbstractMap<String, DumlNode> {
+    private static final int NEWLINE_N = '\n';
+    private static final int NEWLINE_R = '\r';
+    private static final int SPACE = ' ';
+    private static final int TAB = '\t';
+    private static final int COMMENT = '#';
+    private static final int KEY_SEPARATOR = '.';
+
+    private final Source source;
+    private final int[] rests;
+    private final int[] keyEnds;
+
+    // Set when the lines are first grouped by their next key part
+    private volatile boolean indexed = false;
+    private String[] keys;
+    private Map<String, Integer> keyIndices;
+    private int[][] childRests;
+    private int[][] childKeyEnds;
+    private DumlNode[] values;
+
+    private LazyMap(Source source, int[] rests, int[] keyEnds) {
+        this.source = source;
+        this.rests = rests;
+        this.keyEnds = keyEnds;
+    }
+
+    /**
+     * Finds the keys of the lines in the buffer's remaining bytes, which must not be modified
+     * afterwards, and returns a result whose tree and lost nodes are built as they're used.
+     */
+    static DumlParseResult parse(ByteBuffer dumlBytes, boolean trimValues) {
+        ByteBuffer buffer = dumlBytes.duplicate();
+        Source source = new Source(buffer, trimValues);
+        int[] rests = new int[64];
+        int[] keyEnds = new int[64];
+        int lineCount = 0;
+        int end = buffer.limit();
+        int lineStart = buffer.position();
+        while (lineStart < end) {
+            byte first = buffer.get(lineStart);
+            if (first == NEWLINE_N || first == NEWLINE_R) {
+                lineStart++;
+                continue;
+            }
+            int keyEnd = lineStart;
+            while (keyEnd < end) {
+                byte b = buffer.get(keyEnd);
+                if (b == SPACE || b == TAB || b == NEWLINE_N || b == NEWLINE_R) {
+                    break;
+                }
+                keyEnd++;
+            }
+            if (first != COMMENT) {
+                if (keyEnd > lineStart && isAllSeparators(buffer, lineStart, keyEnd)) {
+                    throw new IllegalArgumentException("Key " + source.decode(lineStart, keyEnd) + " has no parts");
+                }
+                if (lineCount == rests.length) {
+                    rests = Arrays.copyOf(rests, lineCount * 2);
+                    keyEnds = Arrays.copyOf(keyEnds, lineCount * 2);
+                }
+                // As if there were a separator just before the first key part
+                rests[lineCount] = lineStart - 1;
+                keyEnds[lineCount] = keyEnd;
+                lineCount++;
+            }
+            lineStart = source.lineEnd(keyEnd);
+        }
+        LazyMap root = new LazyMap(source, Arrays.copyOf(rests, lineCount), Arrays.copyOf(keyEnds, lineCount));
+        return new DumlParseResult(DumlNode.objectOf(root), new LazyLostNodes(source));
+    }
+
+    private static boolean isAllSeparators(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) != KEY_SEPARATOR) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureIndexed() {
+        if (!indexed) {
+            synchronized (this) {
+                if (!indexed) {
+                    index();
+                    indexed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Groups the lines by their next key part, in the order each part first appears.
+     */
+    private void index() {
+        ByteBuffer buffer = source.buffer;
+        int lineCount = rests.length;
+        int[] childOf = new int[lineCount];
+        int[] partStarts = new int[lineCount];
+        int[] partEnds = new int[lineCount];
+        // Open addressing on the bytes of each part; slots hold a child index plus one
+        int[] table = new int[Integer.highestOneBit(Math.max(lineCount, 1) * 2 - 1) << 1];
+        int mask = table.length - 1;
+        int[] childFirstLines = new int[16];
+        int[] childLineCounts = new int[16];
+        int childCount = 0;
+        for (int line = 0; line < lineCount; line++) {
+            int partStart = rests[line] + 1;
+            int partEnd = partStart;
+            int hash = 0;
+            while (partEnd < keyEnds[line]) {
+                byte b = buffer.get(partEnd);
+                if (b == KEY_SEPARATOR) {
+                    break;
+                }
+                hash = 31 * hash + b;
+                partEnd++;
+            }
+            partStarts[line] = partStart;
+            partEnds[line] = partEnd;
+
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            int child;
+            while (true) {
+                int entry = table[slot];
+                if (entry == 0) {
+                    if (childCount == childFirstLines.length) {
+                        childFirstLines = Arrays.copyOf(childFirstLines, childCount * 2);
+                        childLineCounts = Arrays.copyOf(childLineCounts, childCount * 2);
+                    }
+                    child = childCount++;
+                    childFirstLines[child] = line;
+                    table[slot] = child + 1;
+                    break;
+                }
+                int firstLine = childFirstLines[entry - 1];
+                if (bytesEqual(buffer, partStarts[firstLine], partEnds[firstLine], partStart, partEnd)) {
+                    child = entry - 1;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            childOf[line] = child;
+            childLineCounts[child]++;
+        }
+
+        String[] newKeys = new String[childCount];
+        Map<String, Integer> newKeyIndices = new HashMap<>(childCount * 2);
+        int[][] newChildRests = new int[childCount][];
+        int[][] newChildKeyEnds = new int[childCount][];
+        for (int child = 0; child < childCount; child++) {
+            int firstLine = childFirstLines[child];
+            newKeys[child] = source.decode(partStarts[firstLine], partEnds[firstLine]);
+            newKeyIndices.put(newKeys[child], child);
+            newChildRests[child] = new int[childLineCounts[child]];
+            newChildKeyEnds[child] = new int[childLineCounts[child]];
+        }
+        int[] filled = new int[childCount];
+        for (int line = 0; line < lineCount; line++) {
+            int child = childOf[line];
+            newChildRests[child][filled[child]] = partEnds[line];
+            newChildKeyEnds[child][filled[child]] = keyEnds[line];
+            filled[child]++;
+        }
+        keys = newKeys;
+        keyIndices = newKeyIndices;
+        childRests = newChildRests;
+        childKeyEnds = newChildKeyEnds;
+        values = new DumlNode[childCount];
+    }
+
+    private static boolean bytesEqual(ByteBuffer buffer, int start1, int end1, int start2, int end2) {
+        if (end1 - start1 != end2 - start2) {
+            return false;
+        }
+        for (int i = 0; i < end1 - start1; i++) {
+            if (buffer.get(start1 + i) != buffer.get(start2 + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private DumlNode value(int child) {
+        DumlNode value = values[child];
+        if (value == null) {
+            synchronized (this) {
+                value = values[child];
+                if (value == null) {
+                    value = materialize(childRests[child], childKeyEnds[child]);
+                    values[child] = value;
+                }
+            }
+        }
+        return value;
+    }
+
+    private DumlNode materialize(int[] lineRests, int[] lineKeyEnds) {
+        int lineCount = lineRests.length;
+        int lastExactLine = -1;
+        for (int line = lineCount - 1; line >= 0; line--) {
+            if (isAllSeparators(source.buffer, lineRests[line], lineKeyEnds[line])) {
+                lastExactLine = line;
+                break;
+            }
+        }
+        if (lastExactLine == lineCount - 1) {
+            // Only the values since the last line with a longer key are left
+            int runStart = lastExactLine;
+            while (runStart > 0 && isAllSeparators(source.buffer, lineRests[runStart - 1], lineKeyEnds[runStart - 1])) {
+                runStart--;
+            }
+            String[] strings = new String[lineCount - runStart];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = source.value(lineKeyEnds[runStart + i]);
+            }
+            return DumlNode.frozenStrings(strings);
+        }
+        if (lastExactLine < 0) {
+            return DumlNode.objectOf(new LazyMap(source, lineRests, lineKeyEnds));
+        }
+        return DumlNode.objectOf(new LazyMap(source,
+                Arrays.copyOfRange(lineRests, lastExactLine + 1, lineCount),
+                Arrays.copyOfRange(lineKeyEnds, lastExactLine + 1, lineCount)));
+    }
+
+    @Override
+    public DumlNode get(Object key) {
+        ensureIndexed();
+        Integer child = keyIndices.get(key);
+        return child == null ? null : value(child);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        ensureIndexed();
+        return keyIndices.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        ensureIndexed();
+        return keys.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return rests.length == 0;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super DumlNode> action) {
+        ensureIndexed();
+        for (int i = 0; i < keys.length; i++) {
+            action.accept(keys[i], value(i));
+        }
+    }
+
+    @Override
+    public Set<Entry<String, DumlNode>> entrySet() {
+        ensureIndexed();
+        return new AbstractSet<Entry<String, DumlNode>>() {
+            @Override
+            public Iterator<Entry<String, DumlNode>> iterator() {
+                return new Iterator<Entry<String, DumlNode>>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, DumlNode> next() {
+                        if (next >= keys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, DumlNode> entry = new SimpleImmutableEntry<>(keys[next], value(next));
+                        next++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+    /**
+     * The bytes being read, shared by every node of the tree.
+     */
+    private static final class Source {
+        private final ByteBuffer buffer;
+        private final boolean trimValues;
+
+        private Source(ByteBuffer buffer, boolean trimValues) {
+            this.buffer = buffer;
+            this.trimValues = trimValues;
+        }
+
+        int lineEnd(int from) {
+            int end = buffer.limit();
+            while (from < end) {
+                byte b = buffer.get(from);
+                if (b == NEWLINE_N || b == NEWLINE_R) {
+                    break;
+                }
+                from++;
+            }
+            return from;
+        }
+
+        /**
+         * The value of the line whose key ends at the given position.
+         */
+        String value(int keyEnd) {
+            int lineEnd = lineEnd(keyEnd);
+            if (keyEnd == lineEnd) {
+                return "";
+            }
+            int valueStart = keyEnd + 1;
+            int valueEnd = lineEnd;
+            if (trimValues) {
+                // Matches String.trim(), as in DumlTokenizer
+                while (valueStart < valueEnd && (buffer.get(valueStart) & 0xFF) <= SPACE) {
+                    valueStart++;
+                }
+                while (valueEnd > valueStart && (buffer.get(valueEnd - 1) & 0xFF) <= SPACE) {
+                    valueEnd--;
+                }
+            }
+            return decode(valueStart, valueEnd);
+        }
+
+        String decode(int start, int end) {
+            int length = end - start;
+            if (length == 0) {
+                return "";
+            }
+            if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + start, length, StandardCharsets.UTF_8);
+            }
+            byte[] bytes = new byte[length];
+            // A duplicate keeps this safe to call from several threads at once
+            ByteBuffer source = buffer.duplicate();
+            source.position(start);
+            source.get(bytes, 0, length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The lost nodes of a lazily built tree, which are found by parsing the whole document the
+     * first time they're used.
+     */
+    private static final class LazyLostNodes extends AbstractList<LostNode> implements RandomAccess {
+        private final Source source;
+        private volatile List<LostNode> lostNodes;
+
+        private LazyLostNodes(Source source) {
+            this.source = source;
+        }
+
+        private List<LostNode> lostNodes() {
+            List<LostNode> result = lostNodes;
+            if (result == null) {
+                synchronized (this) {
+                    result = lostNodes;
+                    if (result == null) {
+                        result = DumlParser.parse(source.buffer, source.trimValues).freeze().getLostNodes();
+                        lostNodes = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public LostNode get(int index) {
+            return lostNodes().get(index);
+        }
+
+        @Override
+        public int size() {
+            return lostNodes().size();
+        }
+    }
+}
@@ -1,15 +1,23 @@
 package com.github.alexlandau.duml;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
 
 public class LostNode {
     private final List<String> location;
     private final DumlNode node;
+    //@Nullable
+    private final Path source;
 
     public LostNode(List<String> location, DumlNode node) {
+        this(location, node, null);
+    }
+
+    public LostNode(List<String> location, DumlNode node, Path source) {
         this.location = location;
         this.node = node;
+        this.source = source;
     }
 
     public List<String> getLocation() {
@@ -20,22 +28,34 @@ public class LostNode {
         return node;
     }
 
+    /**
+     * When several files were loaded together, the file whose entries replaced the node;
+     * otherwise null.
+     *
+     * @see DumlParser#parseOverlay(List, DumlParserOptions)
+     */
+    //@Nullable
+    public Path getSource() {
+        return source;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         LostNode lostNode = (LostNode) o;
         return Objects.equals(location, lostNode.location) &&
-                Objects.equals(node, lostNode.node);
+                Objects.equals(node, lostNode.node) &&
+                Objects.equals(source, lostNode.source);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(location, node);
+        return Objects.hash(location, node, source);
     }
 
     @Override
     public String toString() {
-        return location + ": " + node;
+        return source == null ? location + ": " + node : location + " (in " + source + "): " + node;
     }
 }
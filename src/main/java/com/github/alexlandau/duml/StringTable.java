@@ -0,0 +1,109 @@
+package com.github.alexlandau.duml;
+
+/**
+ * The distinct strings seen by a parser, looked up by their characters so that a string that has
+ * been seen before is found without creating a new one. Every key in the parser's maps comes from
+ * here, so a key part is only created once per parse, however many lines use it; values go through
+ * it too when {@link DumlParserOptions#isInternValues()} is set.
+ */
+//@NotThreadSafe
+final class StringTable {
+    // Open addressing with linear probing; the length is a power of two
+    private String[] strings = new String[64];
+    private int size = 0;
+    private char[] copyBuffer = new char[32];
+
+    /**
+     * Returns the string equal to chars[start, end), creating it if it hasn't been seen before.
+     */
+    String get(CharSequence chars, int start, int end) {
+        int hash = hash(chars, start, end);
+        int mask = strings.length - 1;
+        int slot = spread(hash) & mask;
+        while (true) {
+            String string = strings[slot];
+            if (string == null) {
+                break;
+            }
+            if (string.hashCode() == hash && matches(string, chars, start, end)) {
+                return string;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (copyBuffer.length < end - start) {
+            copyBuffer = new char[Math.max(end - start, copyBuffer.length * 2)];
+        }
+        String newString = copy(chars, start, end, copyBuffer);
+        strings[slot] = newString;
+        size++;
+        if (size * 2 > strings.length) {
+            rehash();
+        }
+        return newString;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * The same as the hash code of the equal String, which caches its own.
+     */
+    static int hash(CharSequence chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        return hash;
+    }
+
+    static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    static boolean matches(String string, CharSequence chars, int start, int end) {
+        if (string.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (string.charAt(i - start) != chars.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a string of chars[start, end), going through the buffer unless the chars are
+     * already a string. A new buffer is used if it's null or too small.
+     */
+    static String copy(CharSequence chars, int start, int end, char[] buffer) {
+        if (chars instanceof String) {
+            return ((String) chars).substring(start, end);
+        }
+        int length = end - start;
+        if (buffer == null || buffer.length < length) {
+            buffer = new char[length];
+        }
+        for (int i = 0; i < length; i++) {
+            buffer[i] = chars.charAt(start + i);
+        }
+        return new String(buffer, 0, length);
+    }
+
+    private void rehash() {
+        String[] oldStrings = strings;
+        strings = new String[oldStrings.length * 2];
+        int mask = strings.length - 1;
+        for (String string : oldStrings) {
+            if (string != null) {
+                int slot = spread(string.hashCode()) & mask;
+                while (strings[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                strings[slot] = string;
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class DumlBinaryTest {
+    private static final String DUML = "a.b 1\na.c 2\na.b 3\nd x\nd.e y\n\u00e9 \ud83d\ude00\n x\na.c.f 2\n";
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        DumlParseResult expected = DumlParser.parse(DUML, false);
+        byte[] bytes = DumlBinary.toBytes(expected);
+        assertEquals(expected, DumlBinary.read(bytes));
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        DumlBinary.write(expected, stream);
+        assertArrayEquals(bytes, stream.toByteArray());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 3);
+        direct.position(3);
+        direct.put(bytes);
+        direct.position(3);
+        assertEquals(expected, DumlBinary.read(direct));
+        assertEquals(3, direct.position());
+    }
+
+    @Test
+    public void testMappedFile() throws Exception {
+        DumlParseResult expected = DumlParser.parse(DUML, true);
+        Path snapshotFile = Files.createTempFile("duml-binary-test", ".bin");
+        try {
+            DumlBinary.write(expected, snapshotFile);
+            DumlParseResult actual = DumlBinary.read(snapshotFile);
+            assertEquals(expected, actual);
+            assertEquals(expected.toString(), actual.toString());
+        } finally {
+            Files.delete(snapshotFile);
+        }
+    }
+
+    @Test
+    public void testStringsAreStoredOnce() {
+        StringBuilder duml = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            duml.append("some.repeated.key a-repeated-value\n");
+        }
+        assertTrue(DumlBinary.toBytes(DumlParser.parse(duml.toString(), false)).length < 300);
+    }
+
+    @Test
+    public void testUnpairedSurrogates() {
+        DumlNode duml = DumlNode.emptyObject();
+        duml.getMap().put("\udc00", DumlNode.strings(Arrays.asList("a\ud800", "\ud83d\ude00")));
+        DumlParseResult expected = new DumlParseResult(duml, Collections.emptyList());
+        assertEquals(expected, DumlBinary.read(DumlBinary.toBytes(expected)));
+    }
+
+    @Test
+    public void testRejectsOtherData() {
+        byte[] bytes = DumlBinary.toBytes(DumlParser.parse(DUML, false));
+        assertRejected("not a snapshot".getBytes());
+        assertRejected(Arrays.copyOf(bytes, bytes.length - 1));
+        byte[] wrongVersion = bytes.clone();
+        wrongVersion[4] = 99;
+        assertRejected(wrongVersion);
+    }
+
+    @Test
+    public void testRejectsCountsLargerThanTheInput() {
+        // The most a varint can hold, as a count of strings, lost nodes, children, and strings of a node
+        byte[] hugeCount = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 };
+        assertRejected(snapshot(hugeCount));
+        byte[] emptyObject = { 0, 0, 0, 0, 1, 0 };
+        assertRejected(snapshot(new byte[] { 0 }, emptyObject, hugeCount));
+        assertRejected(snapshot(new byte[] { 0, 0, 0, 0, 0, 5 }, hugeCount));
+        assertRejected(snapshot(new byte[] { 0, 1, 0, 0, 0, 5 }, hugeCount));
+        // A string's length, and a node's
+        assertRejected(snapshot(new byte[] { 1 }, hugeCount));
+        assertRejected(snapshot(new byte[] { 0, 0, 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0 }));
+    }
+
+    private static byte[] snapshot(byte[]... parts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write('D');
+        bytes.write('U');
+        bytes.write('M');
+        bytes.write('L');
+        bytes.write(2);
+        for (byte[] part : parts) {
+            bytes.write(part, 0, part.length);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void assertRejected(byte[] bytes) {
+        try {
+            DumlBinary.read(bytes);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DumlBinderTest {
+    private static final String CONFIG = "db.host db.example.com\n"
+            + "db.pool.size 20\n"
+            + "db.pool.maxWait 30s\n"
+            + "db.pool.idleTimeout PT5M\n"
+            + "db.readOnly true\n"
+            + "db.replicas r1.example.com\n"
+            + "db.replicas r2.example.com\n"
+            + "db.ports 5432\n"
+            + "db.ports 5433\n"
+            + "db.weight 0.5\n"
+            + "db.maxRows 10000000000\n";
+
+    record Pool(int size, Duration maxWait, Duration idleTimeout, Integer minIdle) {
+    }
+
+    record Database(String host, Pool pool, boolean readOnly, List<String> replicas, List<Integer> ports,
+                    double weight, long maxRows, @DumlKey("pool.size") int poolSize, DumlNode raw) {
+    }
+
+    interface DatabaseView {
+        String host();
+
+        @DumlKey("pool.size")
+        int poolSize();
+
+        Pool pool();
+
+        List<String> replicas();
+
+        Boolean missing();
+
+        default String describe() {
+            return host() + " with " + poolSize();
+        }
+    }
+
+    private static DumlNode parse(String duml) {
+        return DumlParser.parse(duml, true).getDuml();
+    }
+
+    @Test
+    public void testBindRecord() {
+        DumlNode duml = parse(CONFIG);
+        Database database = DumlBinder.bind(duml.get("db"), Database.class);
+        assertEquals("db.example.com", database.host());
+        assertEquals(new Pool(20, Duration.ofSeconds(30), Duration.ofMinutes(5), null), database.pool());
+        assertTrue(database.readOnly());
+        assertEquals(Arrays.asList("r1.example.com", "r2.example.com"), database.replicas());
+        assertEquals(Arrays.asList(5432, 5433), database.ports());
+        assertEquals(0.5, database.weight(), 0.0);
+        assertEquals(10000000000L, database.maxRows());
+        assertEquals(20, database.poolSize());
+        assertNull(database.raw());
+    }
+
+    @Test
+    public void testBindInterface() {
+        DatabaseView view = DumlBinder.bind(parse(CONFIG).get("db"), DatabaseView.class);
+        assertEquals("db.example.com", view.host());
+        assertEquals(20, view.poolSize());
+        assertEquals(20, view.pool().size());
+        assertEquals(Arrays.asList("r1.example.com", "r2.example.com"), view.replicas());
+        assertNull(view.missing());
+        assertEquals("db.example.com with 20", view.describe());
+
+        DatabaseView same = DumlBinder.bind(parse(CONFIG).get("db"), DatabaseView.class);
+        assertEquals(view, same);
+        assertEquals(view.hashCode(), same.hashCode());
+        assertNotEquals(view, DumlBinder.bind(parse("host other\npool.size 1\n"), DatabaseView.class));
+        assertTrue(view.toString().startsWith("DatabaseView["));
+    }
+
+    @Test
+    public void testBinderIsCachedPerClass() {
+        assertSame(DumlBinder.of(Database.class), DumlBinder.of(Database.class));
+        assertEquals(Database.class, DumlBinder.of(Database.class).getType());
+    }
+
+    @Test
+    public void testLastStringWins() {
+        assertEquals(3, DumlBinder.bind(parse("size 1\nsize 2\nsize 3\n"), Pool.class).size());
+    }
+
+    @Test
+    public void testMissingValues() {
+        Pool pool = DumlBinder.bind(parse("size 1\n"), Pool.class);
+        assertNull(pool.maxWait());
+        assertNull(pool.minIdle());
+        DatabaseView view = DumlBinder.bind(parse("pool.size 1\n"), DatabaseView.class);
+        assertNull(view.host());
+        assertEquals(Collections.emptyList(), view.replicas());
+    }
+
+    @Test
+    public void testMissingPrimitiveThrows() {
+        try {
+            DumlBinder.bind(parse("maxWait 1s\n"), Pool.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("size"));
+        }
+    }
+
+    @Test
+    public void testBadValueThrows() {
+        try {
+            DumlBinder.bind(parse("size lots\n"), Pool.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("lots"));
+        }
+        try {
+            DumlBinder.bind(parse("db.readOnly yes\ndb.pool.size 1\ndb.weight 1\ndb.maxRows 1\n").get("db"), Database.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("readOnly"));
+        }
+    }
+
+    @Test
+    public void testRawNode() {
+        record WithRaw(DumlNode raw) {
+        }
+        DumlNode duml = parse("raw.a 1\nraw.b 2\n");
+        assertSame(duml.get("raw"), DumlBinder.bind(duml, WithRaw.class).raw());
+    }
+
+    @Test
+    public void testDurations() {
+        assertEquals(Duration.ofMillis(250), DumlBinder.parseDuration("250ms"));
+        assertEquals(Duration.ofSeconds(30), DumlBinder.parseDuration(" 30s "));
+        assertEquals(Duration.ofMinutes(5), DumlBinder.parseDuration("5m"));
+        assertEquals(Duration.ofHours(2), DumlBinder.parseDuration("2h"));
+        assertEquals(Duration.ofDays(1), DumlBinder.parseDuration("1d"));
+        assertEquals(Duration.ofSeconds(90), DumlBinder.parseDuration("PT1M30S"));
+        try {
+            DumlBinder.parseDuration("30 fortnights");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    static final class NotARecord {
+    }
+
+    record UnsupportedType(Object value) {
+    }
+
+    interface WithParameters {
+        String value(String key);
+    }
+
+    @Test
+    public void testUnsupportedTypes() {
+        for (Class<?> type : Arrays.asList(NotARecord.class, UnsupportedType.class, WithParameters.class)) {
+            try {
+                DumlBinder.of(type);
+                fail(type.getName());
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.alexlandau.duml;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DumlCacheTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("duml-cache-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private Path write(String name, String duml) throws IOException {
+        Path file = directory.resolve(name);
+        Files.write(file, duml.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        Path file = write("a.duml", "a 1\nb 2");
+        DumlCache cache = DumlCache.builder().build();
+        DumlParseResult first = cache.get(file, false);
+        assertEquals(DumlParser.parse(file, false), first);
+        assertTrue(first.getDuml().isFrozen());
+        assertSame(first, cache.get(file, false));
+        assertSame(first, cache.get(directory.resolve(".").resolve("a.duml"), false));
+        assertNotSame(first, cache.get(file, true));
+
+        DumlCache.Stats stats = cache.stats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(2, stats.getLoadSuccessCount());
+        assertEquals(0.5, stats.getHitRate(), 0.0);
+    }
+
+    @Test
+    public void testChangedFileIsParsedAgain() throws Exception {
+        Path file = write("a.duml", "a 1");
+        DumlCache cache = DumlCache.builder().build();
+        assertEquals("1", cache.get(file, false).getDuml().getLastString("a"));
+
+        FileTime modifiedTime = Files.getLastModifiedTime(file);
+        write("a.duml", "a 2");
+        // Make sure the change is visible even on file systems with coarse timestamps
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modifiedTime.toMillis() + 2000));
+        assertEquals("2", cache.get(file, false).getDuml().getLastString("a"));
+        assertEquals(2, cache.stats().getLoadSuccessCount());
+    }
+
+    @Test
+    public void testChangeWithinTheSameMillisecondIsParsedAgain() throws Exception {
+        Path file = write("a.duml", "a 1");
+        Instant modifiedTime = Instant.parse("2020-01-01T00:00:00.000000100Z");
+        Files.setLastModifiedTime(file, FileTime.from(modifiedTime));
+        Assume.assumeTrue("The file system doesn't keep sub-millisecond times",
+                Files.getLastModifiedTime(file).equals(FileTime.from(modifiedTime)));
+        DumlCache cache = DumlCache.builder().build();
+        assertEquals("1", cache.get(file, false).getDuml().getLastString("a"));
+
+        // The same size, and only the sub-millisecond part of the time differs
+        write("a.duml", "a 2");
+        Files.setLastModifiedTime(file, FileTime.from(modifiedTime.plusNanos(100_000)));
+        assertEquals("2", cache.get(file, false).getDuml().getLastString("a"));
+        assertEquals(2, cache.stats().getLoadSuccessCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedBySize() throws Exception {
+        Path a = write("a.duml", "a 1");
+        Path b = write("b.duml", "b 1");
+        Path c = write("c.duml", "c 1");
+        DumlCache cache = DumlCache.builder().maximumSize(2).build();
+        cache.get(a, false);
+        cache.get(b, false);
+        cache.get(a, false);
+        cache.get(c, false);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.stats().getEvictionCount());
+
+        cache.get(a, false);
+        cache.get(c, false);
+        assertEquals(3, cache.stats().getLoadSuccessCount());
+        cache.get(b, false);
+        assertEquals(4, cache.stats().getLoadSuccessCount());
+    }
+
+    @Test
+    public void testEvictsByWeight() throws Exception {
+        Path small = write("small.duml", "a 1");
+        Path large = write("large.duml", "a 1234567890");
+        DumlCache cache = DumlCache.builder().maximumWeight(10).build();
+        cache.get(small, false);
+        assertEquals(1, cache.size());
+        cache.get(large, false);
+        // The large file alone is over the limit
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.stats().getEvictionCount());
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        Path file = write("a.duml", "a 1");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch finishLoad = new CountDownLatch(1);
+        DumlCache cache = new DumlCache(Long.MAX_VALUE, Long.MAX_VALUE, (dumlFile, trimValues) -> {
+            loads.incrementAndGet();
+            loadStarted.countDown();
+            try {
+                finishLoad.await();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return DumlParser.parse(dumlFile, trimValues);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<DumlParseResult>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.get(file, false)));
+            }
+            loadStarted.await();
+            // Give the other threads a chance to join the load in progress
+            Thread.sleep(100);
+            finishLoad.countDown();
+            DumlParseResult first = results.get(0).get();
+            for (Future<DumlParseResult> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().getLoadSuccessCount());
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() throws Exception {
+        DumlCache cache = DumlCache.builder().build();
+        Path missing = directory.resolve("missing.duml");
+        try {
+            cache.get(missing, false);
+            fail();
+        } catch (NoSuchFileException expected) {
+        }
+        write("missing.duml", "a 1");
+        assertEquals("1", cache.get(missing, false).getDuml().getLastString("a"));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        Path file = write("a.duml", "a 1");
+        DumlCache cache = DumlCache.builder().build();
+        cache.get(file, false);
+        cache.get(file, true);
+        cache.invalidate(file);
+        assertEquals(0, cache.size());
+        cache.get(file, false);
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DumlDiffTest {
+    private static DumlNode parse(String duml) {
+        return DumlParser.parse(duml, true).getDuml();
+    }
+
+    private static String diff(String before, String after) {
+        return DumlDiff.between(parse(before), parse(after)).toString();
+    }
+
+    @Test
+    public void testIdenticalTreesHaveNoChanges() {
+        DumlDiff diff = DumlDiff.between(parse("a.b 1\nc 2\n"), parse("c 2\na.b 1\n"));
+        assertTrue(diff.isEmpty());
+        assertEquals(Collections.emptyList(), diff.getChanges());
+    }
+
+    @Test
+    public void testAddedRemovedAndChangedStrings() {
+        DumlDiff diff = DumlDiff.between(parse("a.b 1\na.c 2\nd 3\n"), parse("a.b 1\na.c 2\na.c 4\ne 5\n"));
+        List<DumlDiff.Change> changes = diff.getChanges();
+        assertEquals(3, changes.size());
+
+        assertEquals(DumlDiff.ChangeType.CHANGED, changes.get(0).getType());
+        assertEquals(DumlPath.of("a.c"), changes.get(0).getPath());
+        assertEquals(Collections.singletonList("2"), changes.get(0).getBefore());
+        assertEquals(Arrays.asList("2", "4"), changes.get(0).getAfter());
+
+        assertEquals(DumlDiff.ChangeType.REMOVED, changes.get(1).getType());
+        assertEquals(DumlPath.of("d"), changes.get(1).getPath());
+        assertEquals(Collections.singletonList("3"), changes.get(1).getBefore());
+        assertEquals(Collections.emptyList(), changes.get(1).getAfter());
+
+        assertEquals(DumlDiff.ChangeType.ADDED, changes.get(2).getType());
+        assertEquals(DumlPath.of("e"), changes.get(2).getPath());
+        assertEquals(Collections.emptyList(), changes.get(2).getBefore());
+        assertEquals(Collections.singletonList("5"), changes.get(2).getAfter());
+    }
+
+    @Test
+    public void testAddedAndRemovedSubtreesAreReportedByLeaf() {
+        assertEquals("[-a.b.c [1], -a.d [2], +x.y [3], +x.z [4]]", diff("a.b.c 1\na.d 2\n", "x.y 3\nx.z 4\n"));
+    }
+
+    @Test
+    public void testChangedKind() {
+        assertEquals("[-a [1], +a.b [2]]", diff("a 1\n", "a.b 2\n"));
+        assertEquals("[-a.b [2], -a.c [3], +a [1]]", diff("a.b 2\na.c 3\n", "a 1\n"));
+    }
+
+    @Test
+    public void testOrderOfStringsMatters() {
+        assertEquals("[~a [1, 2] -> [2, 1]]", diff("a 1\na 2\n", "a 2\na 1\n"));
+    }
+
+    @Test
+    public void testFrozenAndMutableTreesGiveTheSameChanges() {
+        DumlNode before = parse("a.b 1\na.c 2\nd.e.f 3\ng 4\n");
+        DumlNode after = parse("a.b 1\na.c 5\nd.e 6\nh 7\n");
+        DumlDiff expected = DumlDiff.between(before, after);
+        assertEquals(expected.getChanges(), DumlDiff.between(before.freeze(), after.freeze()).getChanges());
+        assertEquals(expected.getChanges(), DumlDiff.between(before.freeze(), after).getChanges());
+        assertEquals(expected.getChanges(), DumlDiff.between(before, after.freeze()).getChanges());
+    }
+
+    @Test
+    public void testUnchangedFrozenSubtreesAreStillCompared() {
+        StringBuilder before = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 100; j++) {
+                before.append("section").append(i).append(".key").append(j).append(" value").append(i * j).append('\n');
+            }
+        }
+        String after = before + "section42.key7 changed\n";
+        DumlNode frozenBefore = parse(before.toString()).freeze();
+        DumlNode frozenAfter = parse(after).freeze();
+
+        DumlDiff frozenDiff = DumlDiff.between(frozenBefore, frozenAfter);
+        assertEquals("[~section42.key7 [value294] -> [value294, changed]]", frozenDiff.toString());
+        // Matching hash codes aren't trusted, so every key of every section is still compared
+        assertEquals(1 + 100 + 100 * 100, frozenDiff.getComparedNodeCount());
+
+        DumlDiff mutableDiff = DumlDiff.between(parse(before.toString()), parse(after));
+        assertEquals(frozenDiff.getChanges(), mutableDiff.getChanges());
+        assertEquals(1 + 100 + 100 * 100, mutableDiff.getComparedNodeCount());
+
+        // Only nodes shared by both trees are skipped
+        DumlNode sharedAfter = DumlNode.emptyObject();
+        sharedAfter.getMap().putAll(frozenBefore.getMap());
+        sharedAfter.getMap().put("section42", frozenAfter.get("section42"));
+        DumlDiff sharedDiff = DumlDiff.between(frozenBefore, sharedAfter);
+        assertEquals(frozenDiff.getChanges(), sharedDiff.getChanges());
+        assertEquals(1 + 100 + 100, sharedDiff.getComparedNodeCount());
+    }
+
+    @Test
+    public void testSharedSubtreesAreSkipped() {
+        DumlNode shared = parse("x 1\ny 2\n");
+        DumlNode before = DumlNode.emptyObject();
+        before.getMap().put("shared", shared);
+        before.getMap().put("other", parse("z 3"));
+        DumlNode after = DumlNode.emptyObject();
+        after.getMap().put("shared", shared);
+        after.getMap().put("other", parse("z 4"));
+
+        DumlDiff diff = DumlDiff.between(before, after);
+        assertEquals("[~other.z [3] -> [4]]", diff.toString());
+        assertEquals(1 + 1 + 2, diff.getComparedNodeCount());
+    }
+
+    @Test
+    public void testFrozenSubtreesWithEqualHashCodesAreStillCompared() {
+        // "Aa" and "BB" have the same String hash code
+        DumlNode before = parse("x.a Aa\nx.b 1\n").freeze();
+        DumlNode after = parse("x.a BB\nx.b 1\n").freeze();
+        assertEquals(before.get("x").hashCode(), after.get("x").hashCode());
+        assertEquals("[~x.a [Aa] -> [BB]]", DumlDiff.between(before, after).toString());
+    }
+
+    @Test
+    public void testChangesKeepTheirOwnStrings() {
+        DumlNode before = parse("a 1\n");
+        DumlNode after = parse("a 2\n");
+        DumlDiff.Change change = DumlDiff.between(before, after).getChanges().get(0);
+        before.getStrings("a").add("3");
+        after.getStrings("a").clear();
+        assertEquals(Collections.singletonList("1"), change.getBefore());
+        assertEquals(Collections.singletonList("2"), change.getAfter());
+        try {
+            change.getAfter().add("4");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testStringsRootNodes() {
+        assertEquals("[~ [a] -> [b]]", DumlDiff.between(DumlNode.strings(Collections.singletonList("a")),
+                DumlNode.strings(Collections.singletonList("b"))).toString());
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DumlDocumentTest {
+    private static String randomLine(Random random) {
+        if (random.nextInt(20) == 0) {
+            return "# comment";
+        }
+        if (random.nextInt(20) == 0) {
+            return "";
+        }
+        String[] keyParts = { "a", "b", "c", "d", "" };
+        StringBuilder line = new StringBuilder();
+        int depth = 1 + random.nextInt(4);
+        for (int j = 0; j < depth; j++) {
+            if (j > 0) {
+                line.append('.');
+            }
+            line.append(keyParts[random.nextInt(j == depth - 1 ? keyParts.length - 1 : keyParts.length)]);
+        }
+        return line.append(random.nextBoolean() ? " " : "\t").append(" value").append(random.nextInt(100)).toString();
+    }
+
+    private static List<String> randomLines(Random random, int count) {
+        return randomLines(random, count, "");
+    }
+
+    // Puts every entry under the prefix, which is empty or ends with a '.'
+    private static List<String> randomLines(Random random, int count, String prefix) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String line = randomLine(random);
+            lines.add(line.isEmpty() || line.startsWith("#") ? line : prefix + line);
+        }
+        return lines;
+    }
+
+    @Test
+    public void testRandomEditsMatchFullParse() {
+        checkRandomEditsMatchFullParse(new Random(10), "");
+    }
+
+    @Test
+    public void testRandomEditsUnderOneTopLevelKeyMatchFullParse() {
+        checkRandomEditsMatchFullParse(new Random(12), "root.");
+        checkRandomEditsMatchFullParse(new Random(13), "root.a.");
+    }
+
+    private static void checkRandomEditsMatchFullParse(Random random, String prefix) {
+        for (boolean trimValues : new boolean[] { false, true }) {
+            List<String> expectedLines = randomLines(random, 100, prefix);
+            DumlDocument document = DumlDocument.parse(String.join("\n", expectedLines), trimValues);
+            for (int edit = 0; edit < 200; edit++) {
+                int from = random.nextInt(expectedLines.size() + 1);
+                int to = Math.min(expectedLines.size(), from + random.nextInt(4));
+                List<String> newLines = randomLines(random, random.nextInt(4), prefix);
+                expectedLines.subList(from, to).clear();
+                expectedLines.addAll(from, newLines);
+
+                DumlParseResult actual = document.replaceLines(from, to, newLines);
+                DumlParseResult expected = DumlParser.parse(String.join("\n", expectedLines), trimValues);
+                assertEquals(expected, actual);
+                assertEquals(expected.toString(), actual.toString());
+                assertEquals(expectedLines.size(), document.getLineCount());
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateMatchesFullParse() {
+        Random random = new Random(11);
+        List<String> lines = randomLines(random, 50);
+        DumlDocument document = DumlDocument.parse(String.join("\r\n", lines), false);
+        for (int edit = 0; edit < 50; edit++) {
+            lines.set(random.nextInt(lines.size()), randomLine(random));
+            String text = String.join(random.nextBoolean() ? "\n" : "\r", lines);
+            assertEquals(DumlParser.parse(text, false), document.update(text));
+        }
+    }
+
+    @Test
+    public void testUnchangedTopLevelNodesAreReused() {
+        DumlDocument document = DumlDocument.parse("a.x 1\nb.x 2\na.y 3\nc 4", false);
+        DumlParseResult before = document.getResult();
+        DumlParseResult after = document.update("a.x 1\nb.x 5\na.y 3\nc 4");
+
+        assertSame(before.getDuml().get("a"), after.getDuml().get("a"));
+        assertSame(before.getDuml().get("c"), after.getDuml().get("c"));
+        assertNotSame(before.getDuml().get("b"), after.getDuml().get("b"));
+        assertEquals(Arrays.asList("2"), before.getDuml().getStrings("b.x"));
+        assertEquals(Arrays.asList("5"), after.getDuml().getStrings("b.x"));
+    }
+
+    @Test
+    public void testOnlyEditedSubtreesAreRebuilt() {
+        DumlDocument document = DumlDocument.parse("app.a.x 1\napp.b.x 2\napp.b.y 3\napp.a.y 4\napp.c 5", false);
+        DumlParseResult before = document.getResult();
+        DumlParseResult after = document.replaceLines(1, 2, Arrays.asList("app.b.x 6"));
+
+        assertEquals(DumlParser.parse("app.a.x 1\napp.b.x 6\napp.b.y 3\napp.a.y 4\napp.c 5", false), after);
+        assertEquals(1, document.getRebuiltLineCount());
+        assertSame(before.getDuml().get("app", "a"), after.getDuml().get("app", "a"));
+        assertSame(before.getDuml().get("app", "b", "y"), after.getDuml().get("app", "b", "y"));
+        assertEquals(Arrays.asList("2"), before.getDuml().getStrings("app.b.x"));
+
+        // An entry directly at a key interacts with everything under it, so that's rebuilt as a whole
+        after = document.replaceLines(5, 5, Arrays.asList("app.b 7"));
+        assertEquals(DumlParser.parse("app.a.x 1\napp.b.x 6\napp.b.y 3\napp.a.y 4\napp.c 5\napp.b 7", false), after);
+        assertEquals(3, document.getRebuiltLineCount());
+        after = document.replaceLines(5, 6, Arrays.asList());
+        assertEquals(DumlParser.parse("app.a.x 1\napp.b.x 6\napp.b.y 3\napp.a.y 4\napp.c 5", false), after);
+        assertEquals(2, document.getRebuiltLineCount());
+    }
+
+    @Test
+    public void testEditedKeysAreOrderedAmongUnchangedOnes() {
+        DumlDocument document = DumlDocument.parse("x.a 1\nx.b 2\nx.c 3\nx.d 4", false);
+        List<String> lines = new ArrayList<>(Arrays.asList("x.a 1", "x.c 3", "x.d 4", "x.b 5"));
+        document.replaceLines(1, 2, Arrays.asList());
+        assertEquals(DumlParser.parse(String.join("\n", lines), false).toString(),
+                document.replaceLines(3, 3, Arrays.asList("x.b 5")).toString());
+
+        lines.addAll(2, Arrays.asList("x.e 6", "x.a 7"));
+        assertEquals(DumlParser.parse(String.join("\n", lines), false).toString(),
+                document.replaceLines(2, 2, Arrays.asList("x.e 6", "x.a 7")).toString());
+        // The new key and both lines of the one that gained a line
+        assertEquals(1 + 2, document.getRebuiltLineCount());
+    }
+
+    @Test
+    public void testRemovingLastEntryRemovesTopLevelKey() {
+        DumlDocument document = DumlDocument.parse("a 1\nb 2\na 3", false);
+        assertEquals(DumlParser.parse("a 1\na 3", false), document.replaceLines(1, 2, Arrays.asList()));
+        assertEquals(DumlParser.parse("a 3\nb 4", false), document.replaceLines(0, 1, Arrays.asList("b 4")));
+    }
+
+    @Test
+    public void testSplitLines() {
+        assertEquals(Arrays.asList("a", "b", "", "c", ""), DumlDocument.splitLines("a\r\nb\r\rc\n"));
+        assertEquals(Arrays.asList(""), DumlDocument.splitLines(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLinesCannotContainLineBreaks() {
+        DumlDocument.parse("a 1", false).replaceLines(0, 1, Arrays.asList("a 1\nb 2"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DumlHandlerTest {
+    private static class RecordingHandler implements DumlHandler {
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onEntry(CharSequence key, CharSequence value, long line) {
+            events.add(line + ": " + key + " = " + value);
+        }
+
+        @Override
+        public void onComment(CharSequence comment, long line) {
+            events.add(line + ": #" + comment);
+        }
+    }
+
+    private static List<String> recordString(String duml, boolean trimValues) {
+        RecordingHandler handler = new RecordingHandler();
+        DumlParser.parse(duml, trimValues, handler);
+        return handler.events;
+    }
+
+    private static List<String> recordBytes(String duml, boolean trimValues) {
+        RecordingHandler handler = new RecordingHandler();
+        DumlParser.parse(ByteBuffer.wrap(duml.getBytes(StandardCharsets.UTF_8)), trimValues, handler);
+        return handler.events;
+    }
+
+    @Test
+    public void testEntriesAndComments() {
+        String duml = "# header\na.b one\n\nstand-alone\na.b  two \n";
+        List<String> expected = Arrays.asList(
+                "1: # header",
+                "2: a.b = one",
+                "4: stand-alone = ",
+                "5: a.b =  two ");
+        assertEquals(expected, recordString(duml, false));
+        assertEquals(expected, recordBytes(duml, false));
+    }
+
+    @Test
+    public void testTrimming() {
+        String duml = "a \t two \t\nb\t";
+        List<String> expected = Arrays.asList("1: a = two", "2: b = ");
+        assertEquals(expected, recordString(duml, true));
+        assertEquals(expected, recordBytes(duml, true));
+    }
+
+    @Test
+    public void testLineNumbersWithMixedLineBreaks() {
+        String duml = "a 1\r\nb 2\rc 3\n\r\nd 4";
+        List<String> expected = Arrays.asList("1: a = 1", "2: b = 2", "3: c = 3", "5: d = 4");
+        assertEquals(expected, recordString(duml, false));
+        assertEquals(expected, recordBytes(duml, false));
+    }
+
+    @Test
+    public void testNonAsciiBytes() {
+        String duml = "caf\u00E9.men\u00FC cr\u00E8me br\u00FBl\u00E9e\n\u65E5\u672C \uD83D\uDE00\n#\u00BFcomment?";
+        List<String> expected = Arrays.asList(
+                "1: caf\u00E9.men\u00FC = cr\u00E8me br\u00FBl\u00E9e",
+                "2: \u65E5\u672C = \uD83D\uDE00",
+                "3: #\u00BFcomment?");
+        assertEquals(expected, recordString(duml, false));
+        assertEquals(expected, recordBytes(duml, false));
+    }
+
+    @Test
+    public void testViewsMatchStrings() {
+        DumlParser.parse(ByteBuffer.wrap("k\u00E9y v\u00E0lue\nkey value".getBytes(StandardCharsets.UTF_8)), false, (key, value, line) -> {
+            String keyString = key.toString();
+            assertEquals(keyString.length(), key.length());
+            for (int i = 0; i < key.length(); i++) {
+                assertEquals(keyString.charAt(i), key.charAt(i));
+            }
+            assertEquals(keyString.substring(1, 3), key.subSequence(1, 3).toString());
+            assertEquals(value.toString().length(), value.length());
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DumlInternerTest {
+    private static final String DUML = "server.host example.com\n"
+            + "server.enabled true\n"
+            + "client.host example.com\n"
+            + "client.enabled true\n";
+
+    @Test
+    public void testInternedValuesAreSharedWithinAParse() {
+        DumlParserOptions options = DumlParserOptions.builder().internValues(true).build();
+        DumlNode duml = DumlParser.parse(DUML, options).getDuml();
+        assertSame(duml.get("server").get("host").getStrings().get(0), duml.get("client").get("host").getStrings().get(0));
+        assertSame(duml.get("server").get("enabled").getStrings().get(0), duml.get("client").get("enabled").getStrings().get(0));
+    }
+
+    @Test
+    public void testValuesAreNotInternedByDefault() {
+        DumlNode duml = DumlParser.parse(DUML, false).getDuml();
+        assertNotSame(duml.get("server").get("host").getStrings().get(0), duml.get("client").get("host").getStrings().get(0));
+    }
+
+    @Test
+    public void testSharedInternerDedupesAcrossParses() {
+        DumlInterner interner = DumlInterner.withCapacity(1024);
+        DumlParserOptions options = DumlParserOptions.builder().internValues(true).interner(interner).build();
+        DumlNode first = DumlParser.parse(DUML.getBytes(), options).getDuml();
+        DumlNode second = DumlParser.parse(DUML, options).getDuml();
+        assertSame(first.getMap().keySet().iterator().next(), second.getMap().keySet().iterator().next());
+        assertSame(first.get("server").get("host").getStrings().get(0), second.get("client").get("host").getStrings().get(0));
+    }
+
+    @Test
+    public void testKeysOnlyWithoutInternValues() {
+        DumlInterner interner = DumlInterner.withCapacity(1024);
+        DumlParserOptions options = DumlParserOptions.builder().interner(interner).build();
+        DumlNode first = DumlParser.parse(DUML, options).getDuml();
+        DumlNode second = DumlParser.parse(DUML, options).getDuml();
+        assertSame(first.getMap().keySet().iterator().next(), second.getMap().keySet().iterator().next());
+        assertNotSame(first.get("server").get("host").getStrings().get(0), second.get("server").get("host").getStrings().get(0));
+    }
+
+    @Test
+    public void testCapacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(1, DumlInterner.withCapacity(1).getCapacity());
+        assertEquals(4, DumlInterner.withCapacity(3).getCapacity());
+        assertEquals(1024, DumlInterner.withCapacity(1000).getCapacity());
+        assertEquals(1024, DumlInterner.withCapacity(1024).getCapacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroCapacityIsRejected() {
+        DumlInterner.withCapacity(0);
+    }
+
+    @Test
+    public void testCollidingStringsAreStillCorrect() {
+        DumlInterner interner = DumlInterner.withCapacity(1);
+        assertEquals("a", interner.intern("a"));
+        assertEquals("b", interner.intern(new StringBuilder("b")));
+        String b = interner.intern("b");
+        assertSame(b, interner.intern(new StringBuilder("b")));
+        assertEquals("a", interner.intern(new StringBuilder("a")));
+    }
+
+    @Test
+    public void testLongStringsAreNotKept() {
+        DumlInterner interner = DumlInterner.withCapacity(16);
+        StringBuilder longString = new StringBuilder();
+        for (int i = 0; i <= DumlInterner.MAX_LENGTH; i++) {
+            longString.append('x');
+        }
+        String first = interner.intern(longString);
+        assertEquals(longString.toString(), first);
+        assertNotSame(first, interner.intern(longString));
+    }
+
+    @Test
+    public void testInterningMatchesPlainParseWithLostNodes() {
+        String duml = "a.b 1\na 2\na.b.c 3\na.b 4\n";
+        List<LostNode> expected = DumlParser.parse(duml, true).getLostNodes();
+        DumlParserOptions options = DumlParserOptions.builder().trimValues(true).internValues(true)
+                .interner(DumlInterner.withCapacity(2)).build();
+        assertEquals(expected, DumlParser.parse(duml, options).getLostNodes());
+    }
+}
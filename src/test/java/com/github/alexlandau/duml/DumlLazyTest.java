@@ -0,0 +1,108 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class DumlLazyTest {
+    private static String randomDuml(Random random, int lines) {
+        String[] keyParts = { "a", "b", "c", "d", "" };
+        StringBuilder duml = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (random.nextInt(20) == 0) {
+                duml.append(random.nextBoolean() ? "# comment\n" : "\n");
+            }
+            int depth = 1 + random.nextInt(4);
+            for (int j = 0; j < depth; j++) {
+                if (j > 0) {
+                    duml.append('.');
+                }
+                duml.append(keyParts[random.nextInt(j == depth - 1 ? keyParts.length - 1 : keyParts.length)]);
+            }
+            if (random.nextInt(10) == 0) {
+                // Trailing empty parts are dropped
+                duml.append("..");
+            }
+            duml.append(random.nextBoolean() ? " " : "\t").append(" value").append(i).append(' ');
+            duml.append(random.nextInt(10) == 0 ? "\r\n" : "\n");
+        }
+        return duml.toString();
+    }
+
+    @Test
+    public void testRandomDocumentsMatchParse() {
+        Random random = new Random(13);
+        for (int trial = 0; trial < 100; trial++) {
+            byte[] bytes = randomDuml(random, 100).getBytes(StandardCharsets.UTF_8);
+            for (boolean trimValues : new boolean[] { false, true }) {
+                DumlParseResult expected = DumlParser.parse(bytes, trimValues);
+                DumlParseResult actual = DumlParser.parseLazy(ByteBuffer.wrap(bytes), trimValues);
+                // Reach a few nodes directly before anything else is built
+                for (String key : new String[] { "a.b", "c", ".d", "b.b.b", "" }) {
+                    assertEquals(expected.getDuml().get(key), actual.getDuml().get(key));
+                    assertEquals(expected.getDuml().getStrings(key), actual.getDuml().getStrings(key));
+                }
+                assertEquals(expected.toString(), actual.toString());
+                assertEquals(expected, actual);
+                assertEquals(expected.hashCode(), actual.hashCode());
+            }
+        }
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        byte[] bytes = "a.b 1\n\u00e9 \u00e8\na 2\n".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertEquals(DumlParser.parse(bytes, false), DumlParser.parseLazy(direct, false));
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        byte[] bytes = randomDuml(new Random(14), 2000).getBytes(StandardCharsets.UTF_8);
+        DumlParseResult expected = DumlParser.parse(bytes, false);
+        DumlParseResult actual = DumlParser.parseLazy(ByteBuffer.wrap(bytes), false);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<String>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(() -> actual.toString());
+            }
+            for (Future<String> future : executor.invokeAll(tasks)) {
+                assertEquals(expected.toString(), future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testReadOnly() {
+        DumlNode duml = DumlParser.parseLazy(ByteBuffer.wrap("a.b 1".getBytes(StandardCharsets.UTF_8)), false).getDuml();
+        try {
+            duml.get("a").getMap().put("c", DumlNode.emptyStrings());
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            duml.getStrings("a.b").add("2");
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeyWithNoParts() {
+        DumlParser.parseLazy(ByteBuffer.wrap("a 1\n.. 2".getBytes(StandardCharsets.UTF_8)), false);
+    }
+}
@@ -0,0 +1,168 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+public class DumlLimitsTest {
+    private static DumlParserOptions.Builder limits() {
+        return DumlParserOptions.builder().trimValues(true);
+    }
+
+    private interface Parse {
+        DumlParseResult parse(String duml, DumlParserOptions options) throws Exception;
+    }
+
+    // Every parse that takes options, so each limit is checked the same way by all of them
+    private static List<Parse> allParses() {
+        List<Parse> parses = new ArrayList<>();
+        parses.add(DumlParser::parse);
+        parses.add((duml, options) -> DumlParser.parse(duml.getBytes(StandardCharsets.UTF_8), options));
+        parses.add((duml, options) -> {
+            Path file = Files.createTempFile("duml-limits-test", ".duml");
+            try {
+                Files.write(file, duml.getBytes(StandardCharsets.UTF_8));
+                // A small window, so long lines span several windows
+                return DumlParser.parseMapped(file, StandardCharsets.UTF_8, options, 8);
+            } finally {
+                Files.delete(file);
+            }
+        });
+        parses.add((duml, options) -> {
+            DumlPushParser pushParser = DumlPushParser.create(options);
+            for (byte b : duml.getBytes(StandardCharsets.UTF_8)) {
+                pushParser.feed(ByteBuffer.wrap(new byte[] { b }));
+            }
+            return pushParser.finish();
+        });
+        return parses;
+    }
+
+    private static void assertExceeds(String duml, DumlParserOptions options, DumlLimitException.Limit limit, long lineNumber) throws Exception {
+        for (Parse parse : allParses()) {
+            try {
+                parse.parse(duml, options);
+                fail("Expected " + limit + " to be exceeded");
+            } catch (DumlLimitException e) {
+                assertEquals(limit, e.getLimit());
+                assertEquals(lineNumber, e.getLineNumber());
+            }
+        }
+    }
+
+    private static void assertWithin(String duml, DumlParserOptions options) throws Exception {
+        for (Parse parse : allParses()) {
+            assertEquals(DumlParser.parse(duml, true), parse.parse(duml, options));
+        }
+    }
+
+    @Test
+    public void testMaxLineLength() throws Exception {
+        DumlParserOptions options = limits().maxLineLength(10).build();
+        assertWithin("a 12345678\r\nb 12345678\n", options);
+        assertExceeds("a 1\n\nb 123456789\nc 1\n", options, DumlLimitException.Limit.LINE_LENGTH, 3);
+        assertExceeds("a 1\nb 123456789", options, DumlLimitException.Limit.LINE_LENGTH, 2);
+        assertExceeds("# 123456789\n", options, DumlLimitException.Limit.LINE_LENGTH, 1);
+    }
+
+    @Test
+    public void testLongLineFailsBeforeItEnds() {
+        DumlPushParser pushParser = DumlPushParser.create(limits().maxLineLength(100).build());
+        pushParser.feed(ByteBuffer.wrap("a 1\nkey ".getBytes(StandardCharsets.UTF_8)));
+        byte[] chunk = new byte[10];
+        Arrays.fill(chunk, (byte) 'x');
+        int fed = 0;
+        try {
+            while (fed < 1000) {
+                pushParser.feed(ByteBuffer.wrap(chunk));
+                fed += chunk.length;
+            }
+            fail();
+        } catch (DumlLimitException e) {
+            assertEquals(2, e.getLineNumber());
+        }
+        // Only the chunk that crossed the limit was read, and none of it was kept
+        assertEquals(90, fed);
+    }
+
+    @Test
+    public void testMaxKeyDepth() throws Exception {
+        DumlParserOptions options = limits().maxKeyDepth(3).build();
+        assertWithin("a.b.c 1\na.b.d... 2\n", options);
+        assertExceeds("a.b.c 1\na.b.c.d 2\n", options, DumlLimitException.Limit.KEY_DEPTH, 2);
+    }
+
+    @Test
+    public void testMaxTotalNodes() throws Exception {
+        DumlParserOptions options = limits().maxTotalNodes(4).build();
+        // a, a.b, a.c, and d
+        assertWithin("a.b 1\na.b 2\na.c 3\nd 4\n", options);
+        assertExceeds("a.b 1\na.c 2\nd 3\ne 4\n", options, DumlLimitException.Limit.TOTAL_NODES, 4);
+        // Replacing a node creates a new one, and the old one is still kept as a lost node
+        assertExceeds("a.b 1\na.c 2\na 3\n\na.b 4\n", options, DumlLimitException.Limit.TOTAL_NODES, 5);
+    }
+
+    @Test
+    public void testMaxValuesPerKey() throws Exception {
+        DumlParserOptions options = limits().maxValuesPerKey(2).build();
+        assertWithin("a 1\nb 1\na 2\nb 2\n", options);
+        assertExceeds("a 1\nb 1\na 2\na 3\n", options, DumlLimitException.Limit.VALUES_PER_KEY, 4);
+    }
+
+    @Test
+    public void testMaxRetainedChars() throws Exception {
+        DumlParserOptions options = limits().maxRetainedChars(10).build();
+        // Keys "ab" and "c", and values "123", "4", and "5"
+        assertWithin("ab 123\nab 4\nc   5   \n", options);
+        assertExceeds("ab 123\nab 4\nc 5\nd\ne 1\n", options, DumlLimitException.Limit.RETAINED_CHARS, 5);
+    }
+
+    @Test
+    public void testLimitsApplyToParsesOfFilesAndChannels() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("duml-limits-test", ".duml");
+        try {
+            Files.write(file, "a 1\na 2\n".getBytes(StandardCharsets.UTF_8));
+            DumlParserOptions options = limits().maxValuesPerKey(1).build();
+            try {
+                DumlParser.parse(file.toFile(), options);
+                fail();
+            } catch (DumlLimitException e) {
+                assertEquals(2, e.getLineNumber());
+            }
+            try {
+                DumlParser.parseAsync(file, options).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertEquals(DumlLimitException.Limit.VALUES_PER_KEY, ((DumlLimitException) e.getCause()).getLimit());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testExceptionDescribesTheLimit() {
+        try {
+            DumlParser.parse("a 1\na.b.c 2\n", limits().maxKeyDepth(2).build());
+            fail();
+        } catch (DumlLimitException e) {
+            assertEquals(2, e.getMaximum());
+            assertEquals("Line 2 exceeds the KEY_DEPTH limit of 2", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeLimitsAreRejected() {
+        DumlParserOptions.builder().maxTotalNodes(-1);
+    }
+}
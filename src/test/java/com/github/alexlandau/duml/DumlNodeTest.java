@@ -2,6 +2,10 @@ package com.github.alexlandau.duml;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
 import static org.junit.Assert.*;
 
 public class DumlNodeTest {
@@ -38,4 +42,135 @@ public class DumlNodeTest {
         assertNull(c.get(""));
         assertNull(c.get("d"));
     }
+
+    @Test
+    public void testGetWithPath() {
+        DumlNode root = DumlParser.parse("a.b.c d\na.b.c e", false).getDuml();
+        assertSame(root.get("a"), root.get(DumlPath.of("a")));
+        assertSame(root.get("a.b"), root.get(DumlPath.of("a.b")));
+        assertSame(root.get("a.b.c"), root.get(DumlPath.of("a.b.c")));
+        assertSame(root.get("a.b.c"), root.get(DumlPath.of("a", "b.c")));
+        assertSame(root.get("a.b.c"), root.get(DumlPath.of("a.b", "c")));
+        assertSame(root.get("a.b.c"), root.get("a").get(DumlPath.of("b.c")));
+
+        assertEquals(Arrays.asList("d", "e"), root.getStrings(DumlPath.of("a.b.c")));
+        assertEquals("e", root.getLastString(DumlPath.of("a.b.c")));
+        assertEquals(Collections.emptyList(), root.getStrings(DumlPath.of("a.b.d")));
+        assertNull(root.getLastString(DumlPath.of("a.b.d")));
+
+        assertNull(root.get(DumlPath.of("ab")));
+        assertNull(root.get(DumlPath.of("a.b.c.d")));
+        assertNull(root.get("a.b.c").get(DumlPath.of("d")));
+    }
+
+    @Test
+    public void testPathSplitsLikeRegex() {
+        for (String key : Arrays.asList("a.b.c", "a", "", "a..b", "a.b.", "a..", ".a", ".", "..")) {
+            assertEquals(key, Arrays.asList(key.split("\\.")), DumlPath.of(key).getParts());
+        }
+        assertEquals(Arrays.asList("a", "b", "", "c"), DumlPath.of("a.b", ".c").getParts());
+        assertEquals("a.b.c", DumlPath.of("a", "b", "c").toString());
+        assertEquals(DumlPath.of("a.b.c"), DumlPath.of("a", "b.c"));
+    }
+
+    @Test
+    public void testFreeze() {
+        StringBuilder duml = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            duml.append("big.key").append(i).append(" value").append(i).append('\n');
+        }
+        duml.append("small.one a\nsmall.many b\nsmall.many c\n");
+        DumlNode root = DumlParser.parse(duml.toString(), false).getDuml();
+        DumlNode frozen = root.freeze();
+
+        assertFalse(root.isFrozen());
+        assertTrue(frozen.isFrozen());
+        assertTrue(frozen.get("big").isFrozen());
+        assertTrue(frozen.get("small.one").isFrozen());
+        assertSame(frozen, frozen.freeze());
+        assertEquals(root, frozen);
+        assertEquals(frozen, root);
+        assertEquals(root.hashCode(), frozen.hashCode());
+        assertEquals(root.toString(), frozen.toString());
+
+        assertEquals(new ArrayList<>(root.get("big").getMap().keySet()), new ArrayList<>(frozen.get("big").getMap().keySet()));
+        for (int i = 0; i < 20; i++) {
+            assertEquals("value" + i, frozen.getLastString("big.key" + i));
+        }
+        assertNull(frozen.get("big.key20"));
+        assertNull(frozen.get("big").getMap().get(new Object()));
+        assertEquals(Collections.singletonList("a"), frozen.getStrings("small.one"));
+        assertEquals(Arrays.asList("b", "c"), frozen.getStrings("small.many"));
+        assertEquals("c", frozen.getLastString("small.many"));
+        assertTrue(DumlNode.emptyStrings().freeze().getStrings().isEmpty());
+        assertTrue(DumlNode.emptyObject().freeze().getMap().isEmpty());
+    }
+
+    @Test
+    public void testFrozenNodesAreImmutable() {
+        DumlNode frozen = DumlParser.parse("a.b c", false).getDuml().freeze();
+        try {
+            frozen.getMap().put("d", DumlNode.emptyStrings());
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            frozen.getMap().remove("a");
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            frozen.getStrings("a.b").add("e");
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        assertEquals("c", frozen.getLastString("a.b"));
+    }
+
+    @Test
+    public void testFrozenHashCodesMatchMutableOnes() {
+        DumlNode mutable = DumlParser.parse("a.b.c d\na.b.c e\na.f g\nh i\n", false).getDuml();
+        DumlNode frozen = mutable.freeze();
+        assertEquals(mutable.hashCode(), frozen.hashCode());
+        // Remembered hash codes give the same answer
+        assertEquals(mutable.hashCode(), frozen.hashCode());
+        assertEquals(mutable.get("a").hashCode(), frozen.get("a").hashCode());
+        assertEquals(mutable.get("a.b.c").hashCode(), frozen.get("a.b.c").hashCode());
+        assertEquals(mutable.getMap().hashCode(), frozen.getMap().hashCode());
+        assertEquals(mutable.getStrings("a.b.c").hashCode(), frozen.getStrings("a.b.c").hashCode());
+    }
+
+    @Test
+    public void testMutableHashCodesFollowChanges() {
+        DumlNode mutable = DumlParser.parse("a.b c\n", false).getDuml();
+        int hashCode = mutable.hashCode();
+        mutable.get("a.b").getStrings().add("d");
+        assertNotEquals(hashCode, mutable.hashCode());
+        assertEquals(mutable.freeze().hashCode(), mutable.hashCode());
+    }
+
+    @Test
+    public void testFrozenEquality() {
+        DumlNode first = DumlParser.parse("a.b 1\na.c 2\nd 3\n", false).getDuml().freeze();
+        DumlNode same = DumlParser.parse("a.b 1\na.c 2\nd 3\n", false).getDuml().freeze();
+        DumlNode reordered = DumlParser.parse("d 3\na.c 2\na.b 1\n", false).getDuml().freeze();
+        DumlNode different = DumlParser.parse("a.b 1\na.c 4\nd 3\n", false).getDuml().freeze();
+        DumlNode differentKey = DumlParser.parse("a.b 1\na.e 2\nd 3\n", false).getDuml().freeze();
+
+        assertEquals(first, same);
+        assertEquals(first, reordered);
+        assertEquals(reordered, first);
+        assertNotEquals(first, different);
+        assertNotEquals(first, differentKey);
+        // Against mutable nodes, in both directions
+        assertEquals(first, DumlParser.parse("a.b 1\na.c 2\nd 3\n", false).getDuml());
+        assertEquals(DumlParser.parse("a.b 1\na.c 2\nd 3\n", false).getDuml(), first);
+        assertNotEquals(first, DumlParser.parse("a.b 1\na.c 4\nd 3\n", false).getDuml());
+
+        // Strings in a different order aren't equal
+        assertNotEquals(DumlNode.strings(Arrays.asList("Aa", "BB")).freeze(), DumlNode.strings(Arrays.asList("BB", "Aa")).freeze());
+        assertEquals(DumlNode.strings(Arrays.asList("Aa", "BB")).freeze(), DumlNode.strings(Arrays.asList("Aa", "BB")).freeze());
+        // Colliding hash codes still compare contents
+        assertNotEquals(DumlNode.strings(Collections.singletonList("Aa")).freeze(), DumlNode.strings(Collections.singletonList("BB")).freeze());
+    }
 }
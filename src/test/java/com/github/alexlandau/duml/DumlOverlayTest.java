@@ -0,0 +1,164 @@
+package com.github.alexlandau.duml;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class DumlOverlayTest {
+    private static final DumlParserOptions TRIMMED = DumlParserOptions.builder().trimValues(true).build();
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("duml-overlay-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private Path write(String name, String duml) throws IOException {
+        Path file = directory.resolve(name);
+        Files.write(file, duml.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testLaterFilesOverrideEarlierOnes() throws IOException {
+        Path defaults = write("defaults.duml", "server.host localhost\nserver.port 80\nserver.tags a\nserver.tags b\nlogging.level info\n");
+        Path region = write("region.duml", "server.host eu.example.com\nregion eu\n");
+        Path host = write("host.duml", "server.port 8080\nserver.tags c\n");
+
+        DumlParseResult result = DumlParser.parseOverlay(Arrays.asList(defaults, region, host), TRIMMED);
+
+        DumlParseResult expectedTree = DumlParser.parse("server.host eu.example.com\nserver.port 8080\nserver.tags c\n"
+                + "logging.level info\nregion eu\n", true);
+        assertEquals(expectedTree.getDuml(), result.getDuml());
+        assertEquals(Arrays.asList(
+                new LostNode(Arrays.asList("server", "host"), DumlParser.parse("x localhost", true).getDuml().get("x"), region),
+                new LostNode(Arrays.asList("server", "port"), DumlParser.parse("x 80", true).getDuml().get("x"), host),
+                new LostNode(Arrays.asList("server", "tags"), DumlParser.parse("x a\nx b", true).getDuml().get("x"), host)),
+                result.getLostNodes());
+    }
+
+    @Test
+    public void testReplacedSubtreesAreAttributedToTheReplacingFile() throws IOException {
+        Path first = write("first.duml", "a.b 1\na.c 2\n");
+        Path second = write("second.duml", "a 3\nd.e 4\n");
+        Path third = write("third.duml", "d.e.f 5\n");
+
+        DumlParseResult result = DumlParser.parseOverlay(Arrays.asList(first, second, third), TRIMMED);
+
+        assertEquals(DumlParser.parse("a 3\nd.e.f 5\n", true).getDuml(), result.getDuml());
+        List<LostNode> lostNodes = result.getLostNodes();
+        assertEquals(2, lostNodes.size());
+        assertEquals(Collections.singletonList("a"), lostNodes.get(0).getLocation());
+        assertEquals(DumlParser.parse("b 1\nc 2\n", true).getDuml(), lostNodes.get(0).getNode());
+        assertEquals(second, lostNodes.get(0).getSource());
+        assertEquals(Arrays.asList("d", "e"), lostNodes.get(1).getLocation());
+        assertEquals(third, lostNodes.get(1).getSource());
+    }
+
+    @Test
+    public void testLostNodesWithinAFileAreAttributedToIt() throws IOException {
+        Path first = write("first.duml", "a.b 1\n");
+        Path second = write("second.duml", "x 1\nx.y 2\n");
+
+        DumlParseResult result = DumlParser.parseOverlay(Arrays.asList(first, second), TRIMMED);
+
+        LostNode lostNode = result.getLostNodes().get(0);
+        assertEquals(Collections.singletonList("x"), lostNode.getLocation());
+        assertEquals(second, lostNode.getSource());
+        assertTrue(lostNode.toString().contains("second.duml"));
+    }
+
+    @Test
+    public void testSingleFileMatchesParseExceptForSources() throws IOException {
+        Path file = write("file.duml", "a 1\na.b 2\nc 3\nc 4\n");
+
+        DumlParseResult expected = DumlParser.parse(file, TRIMMED);
+        DumlParseResult result = DumlParser.parseOverlay(Collections.singletonList(file), TRIMMED);
+
+        assertEquals(expected.getDuml(), result.getDuml());
+        assertEquals(1, result.getLostNodes().size());
+        assertEquals(expected.getLostNodes().get(0).getLocation(), result.getLostNodes().get(0).getLocation());
+        assertEquals(file, result.getLostNodes().get(0).getSource());
+    }
+
+    @Test
+    public void testKeyOrderFollowsFirstAppearance() throws IOException {
+        Path first = write("first.duml", "b 1\na 2\n");
+        Path second = write("second.duml", "c 3\na 4\nb.x 5\n");
+
+        DumlNode duml = DumlParser.parseOverlay(Arrays.asList(first, second), TRIMMED).getDuml();
+
+        assertEquals(Arrays.asList("b", "a", "c"), new ArrayList<>(duml.getMap().keySet()));
+    }
+
+    @Test
+    public void testManyFilesOnGivenExecutorAreDeterministic() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            StringBuilder duml = new StringBuilder();
+            for (int j = 0; j < 200; j++) {
+                duml.append("k").append(j % 17).append(".v").append((i + j) % 5).append(' ').append(i).append('\n');
+            }
+            files.add(write("layer" + i + ".duml", duml.toString()));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            DumlParseResult expected = DumlParser.parseOverlay(files, TRIMMED, Runnable::run);
+            for (int attempt = 0; attempt < 5; attempt++) {
+                assertEquals(expected, DumlParser.parseOverlay(files, TRIMMED, executor));
+                assertEquals(expected, DumlParser.parseOverlay(files, TRIMMED));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testEmptyListGivesEmptyResult() throws IOException {
+        DumlParseResult result = DumlParser.parseOverlay(Collections.emptyList(), TRIMMED);
+        assertTrue(result.getDuml().getMap().isEmpty());
+        assertTrue(result.getLostNodes().isEmpty());
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void testMissingFileThrows() throws IOException {
+        Path first = write("first.duml", "a 1\n");
+        DumlParser.parseOverlay(Arrays.asList(first, directory.resolve("missing.duml")), TRIMMED);
+    }
+
+    @Test
+    public void testSourcesSurviveFreezingAndSnapshots() throws IOException {
+        Path first = write("first.duml", "a 1\n");
+        Path second = write("second.duml", "a.b 2\n");
+        DumlParseResult result = DumlParser.parseOverlay(Arrays.asList(first, second), TRIMMED);
+
+        assertEquals(result, result.freeze());
+        assertEquals(result, DumlBinary.read(DumlBinary.toBytes(result)));
+        assertEquals(second, DumlBinary.read(DumlBinary.toBytes(result)).getLostNodes().get(0).getSource());
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class DumlParallelParserTest {
+    private static String randomDuml(Random random, int lines) {
+        String[] keyParts = { "a", "b", "c", "d", "" };
+        StringBuilder duml = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            int depth = 1 + random.nextInt(4);
+            for (int j = 0; j < depth; j++) {
+                if (j > 0) {
+                    duml.append('.');
+                }
+                duml.append(keyParts[random.nextInt(j == depth - 1 ? keyParts.length - 1 : keyParts.length)]);
+            }
+            duml.append(random.nextBoolean() ? " " : "\t").append("value").append(i);
+            duml.append(random.nextInt(10) == 0 ? "\r\n" : "\n");
+            if (random.nextInt(20) == 0) {
+                duml.append("# comment\n");
+            }
+        }
+        return duml.toString();
+    }
+
+    @Test
+    public void testRandomDocumentsWithManyLostNodes() {
+        Random random = new Random(8);
+        for (int trial = 0; trial < 50; trial++) {
+            byte[] bytes = randomDuml(random, 200).getBytes(StandardCharsets.UTF_8);
+            DumlParseResult expected = DumlParser.parse(bytes, false);
+            assertFalse(expected.getLostNodes().isEmpty());
+            for (int chunkSize : new int[] { 1, 100, 1000 }) {
+                for (int bucketCount : new int[] { 1, 2, 16 }) {
+                    List<ByteBuffer> chunks = DumlParallelParser.splitAtLines(ByteBuffer.wrap(bytes), chunkSize);
+                    DumlParseResult actual = new DumlParallelParser(false, ForkJoinPool.commonPool(), bucketCount).parse(chunks);
+                    assertEquals(expected, actual);
+                    assertEquals(expected.toString(), actual.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testChunksEndAtLineBreaks() {
+        byte[] bytes = "a 1\nb 2\r\nc 3\n\nd 4".getBytes(StandardCharsets.UTF_8);
+        List<ByteBuffer> chunks = DumlParallelParser.splitAtLines(ByteBuffer.wrap(bytes), 2);
+        int total = 0;
+        for (ByteBuffer chunk : chunks) {
+            byte last = chunk.get(chunk.limit() - 1);
+            assertTrue(chunk.limit() == bytes.length || last == '\n' || last == '\r');
+            total += chunk.remaining();
+        }
+        assertEquals(bytes.length, total);
+    }
+}
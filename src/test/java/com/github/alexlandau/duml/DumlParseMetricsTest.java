@@ -0,0 +1,87 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DumlParseMetricsTest {
+    private static DumlParseMetrics metricsOf(String duml) {
+        List<DumlParseMetrics> reported = new ArrayList<>();
+        DumlParserOptions options = DumlParserOptions.builder().listener(reported::add).build();
+        DumlParser.parse(duml, options);
+        DumlParser.parse(ByteBuffer.wrap(duml.getBytes(StandardCharsets.UTF_8)), options);
+        assertEquals(2, reported.size());
+        assertEquals(reported.get(0).toString().replaceAll("durationNanos=\\d+", ""),
+                reported.get(1).toString().replaceAll("durationNanos=\\d+", ""));
+        return reported.get(0);
+    }
+
+    @Test
+    public void testCounts() {
+        DumlParseMetrics metrics = metricsOf("a.b.c 1\na.b.c 2\na.b.c 3\n# comment\n\nd 4\nd.e.f.g 5\nh.i 6\n");
+        assertEquals(8, metrics.getLineCount());
+        assertEquals(55, metrics.getInputSize());
+        // The root, a, a.b, d, d.e, d.e.f, and h
+        assertEquals(7, metrics.getObjectNodeCount());
+        assertEquals(3, metrics.getStringsNodeCount());
+        assertEquals(5, metrics.getStringCount());
+        assertEquals(4, metrics.getMaxKeyDepth());
+        assertEquals(1, metrics.getLostNodeCount());
+        assertEquals(3, metrics.getLargestStringListSize());
+        assertTrue(metrics.getDurationNanos() >= 0);
+    }
+
+    @Test
+    public void testMaxKeyDepthIncludesLostNodes() {
+        DumlParseMetrics metrics = metricsOf("a.b.c.d 1\na 2");
+        assertEquals(4, metrics.getMaxKeyDepth());
+        assertEquals(1, metrics.getStringsNodeCount());
+    }
+
+    @Test
+    public void testLineCounts() {
+        assertEquals(0, metricsOf("").getLineCount());
+        assertEquals(1, metricsOf("a").getLineCount());
+        assertEquals(1, metricsOf("a\n").getLineCount());
+        assertEquals(2, metricsOf("a\r\nb").getLineCount());
+        assertEquals(4, metricsOf("a\r\n\r\rb\n").getLineCount());
+        assertEquals(3, metricsOf("\n\n\n").getLineCount());
+    }
+
+    @Test
+    public void testFiles() throws Exception {
+        String duml = "a.b 1\r\nc 2\n";
+        Path file = Files.createTempFile("duml-metrics-test", ".duml");
+        try {
+            Files.write(file, duml.getBytes(StandardCharsets.UTF_8));
+            List<DumlParseMetrics> reported = new ArrayList<>();
+            DumlParserOptions options = DumlParserOptions.builder().trimValues(true).listener(reported::add).build();
+            DumlParser.parse(file, options);
+            DumlParser.parse(file.toFile(), options);
+            DumlParser.parse(file, StandardCharsets.ISO_8859_1, options);
+            for (DumlParseMetrics metrics : reported) {
+                assertEquals(duml.length(), metrics.getInputSize());
+                assertEquals(3, metrics.getObjectNodeCount() + metrics.getStringsNodeCount() - 1);
+            }
+            assertEquals(2, reported.get(0).getLineCount());
+            assertEquals(2, reported.get(1).getLineCount());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testOptionsDoNotChangeResult() {
+        String duml = "a  1 \nb.c\t2";
+        DumlParserOptions options = DumlParserOptions.builder().trimValues(true).listener(metrics -> { }).build();
+        assertEquals(DumlParser.parse(duml, true), DumlParser.parse(duml, options));
+        assertEquals(DumlParser.parse(duml, false), DumlParser.parse(duml, DumlParserOptions.builder().build()));
+    }
+}
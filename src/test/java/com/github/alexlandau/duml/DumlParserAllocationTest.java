@@ -0,0 +1,70 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class DumlParserAllocationTest {
+    private static final int KEY_COUNT = 1000;
+    private static final int REPETITIONS = 20;
+
+    /**
+     * Lines whose keys all exist after the first repetition, with 7-char values that don't need
+     * trimming.
+     */
+    private static byte[] repeatedKeys() {
+        StringBuilder duml = new StringBuilder();
+        for (int repetition = 0; repetition < REPETITIONS; repetition++) {
+            for (int key = 0; key < KEY_COUNT; key++) {
+                duml.append("section").append(key % 10).append(".group").append(key % 100).append(".key").append(key)
+                        .append("  v").append(100000 + repetition).append(" \n");
+            }
+        }
+        return duml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long allocatedBytes(Runnable runnable) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled());
+        long threadId = Thread.currentThread().getId();
+        long before = allocationBean.getThreadAllocatedBytes(threadId);
+        runnable.run();
+        return allocationBean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    @Test
+    public void testAllocationsPerLineWithTrimming() {
+        byte[] bytes = repeatedKeys();
+        // Warm up, so that nothing measured comes from class loading or the interpreter
+        for (int i = 0; i < 20; i++) {
+            DumlParser.parse(bytes, true);
+        }
+        byte[] firstRepetition = new byte[bytes.length / REPETITIONS];
+        System.arraycopy(bytes, 0, firstRepetition, 0, firstRepetition.length);
+        long allocatedForAll = allocatedBytes(() -> DumlParser.parse(ByteBuffer.wrap(bytes), true));
+        long allocatedForFirst = allocatedBytes(() -> DumlParser.parse(ByteBuffer.wrap(firstRepetition), true));
+        // Lines repeating existing keys should only need their value, which is a String of about
+        // 24 bytes plus a byte array of about 24 bytes, and room in the list they're added to
+        double bytesPerRepeatedLine = (double) (allocatedForAll - allocatedForFirst) / ((REPETITIONS - 1) * KEY_COUNT);
+        assertTrue("Allocated " + bytesPerRepeatedLine + " bytes per line", bytesPerRepeatedLine < 80);
+    }
+
+    @Test
+    public void testKeyPartsAreCreatedOncePerParse() {
+        DumlNode duml = DumlParser.parse("a.shared 1\nb.shared 2\nshared.a 3\n", true).getDuml();
+        String firstShared = duml.get("a").getMap().keySet().iterator().next();
+        String secondShared = duml.get("b").getMap().keySet().iterator().next();
+        String thirdShared = new ArrayList<>(duml.getMap().keySet()).get(2);
+        assertSame(firstShared, secondShared);
+        assertSame(firstShared, thirdShared);
+        assertSame(duml.getMap().keySet().iterator().next(), duml.get("shared").getMap().keySet().iterator().next());
+    }
+}
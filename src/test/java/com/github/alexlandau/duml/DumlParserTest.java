@@ -8,12 +8,20 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 @RunWith(Parameterized.class)
 public class DumlParserTest {
     @Parameterized.Parameters(name="{0}")
@@ -43,6 +51,134 @@ public class DumlParserTest {
         testTestCase(true);
     }
 
+    @Test
+    public void testBytesMatchReader() throws Exception {
+        byte[] bytes = Files.readAllBytes(dumlFile.toPath());
+        for (boolean trimValues : new boolean[] { false, true }) {
+            DumlParseResult expected = DumlParser.parse(new String(bytes, StandardCharsets.UTF_8), trimValues);
+            assertEquals(expected, DumlParser.parse(bytes, trimValues));
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).flip();
+            assertEquals(expected, DumlParser.parse(direct, trimValues));
+        }
+    }
+
+    @Test
+    public void testMappedFileMatchesReader() throws Exception {
+        for (boolean trimValues : new boolean[] { false, true }) {
+            DumlParseResult expected = DumlParser.parse(dumlFile, trimValues);
+            assertEquals(expected, DumlParser.parse(dumlFile.toPath(), trimValues));
+            // Small windows force lines to be split across mappings
+            for (long windowSize : new long[] { 1, 3, 16 }) {
+                assertEquals(expected, DumlParser.parseMapped(dumlFile.toPath(), StandardCharsets.UTF_8, DumlParserOptions.of(trimValues), windowSize));
+            }
+        }
+    }
+
+    @Test
+    public void testMappedFileWithOtherCharset() throws Exception {
+        String text = new String(Files.readAllBytes(dumlFile.toPath()), StandardCharsets.UTF_8);
+        Path utf16File = Files.createTempFile("duml", ".duml");
+        try {
+            Files.write(utf16File, text.getBytes(StandardCharsets.UTF_16));
+            for (boolean trimValues : new boolean[] { false, true }) {
+                assertEquals(DumlParser.parse(text, trimValues), DumlParser.parse(utf16File, StandardCharsets.UTF_16, trimValues));
+            }
+        } finally {
+            Files.delete(utf16File);
+        }
+    }
+
+    @Test
+    public void testFrozenResultIsEqual() throws Exception {
+        for (boolean trimValues : new boolean[] { false, true }) {
+            DumlParseResult parseResult = DumlParser.parse(dumlFile, trimValues);
+            DumlParseResult frozen = parseResult.freeze();
+            assertEquals(parseResult, frozen);
+            assertEquals(frozen, parseResult);
+            assertEquals(parseResult.hashCode(), frozen.hashCode());
+            assertEquals(parseResult.toString(), frozen.toString());
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSequential() throws Exception {
+        byte[] bytes = Files.readAllBytes(dumlFile.toPath());
+        for (boolean trimValues : new boolean[] { false, true }) {
+            DumlParseResult expected = DumlParser.parse(bytes, trimValues);
+            assertEquals(expected, DumlParser.parseParallel(ByteBuffer.wrap(bytes), trimValues));
+            assertEquals(expected, DumlParser.parseParallel(dumlFile.toPath(), trimValues));
+            // Tiny chunks and a few buckets split the entries up as much as possible
+            for (int chunkSize : new int[] { 1, 7, 64 }) {
+                List<ByteBuffer> chunks = DumlParallelParser.splitAtLines(ByteBuffer.wrap(bytes), chunkSize);
+                assertEquals(expected, new DumlParallelParser(trimValues, ForkJoinPool.commonPool(), 3).parse(chunks));
+            }
+        }
+    }
+
+    @Test
+    public void testWrittenTextParsesToSameTree() throws Exception {
+        for (boolean trimValues : new boolean[] { false, true }) {
+            DumlNode duml = DumlParser.parse(dumlFile, trimValues).getDuml();
+            assertEquals(duml, DumlParser.parse(DumlWriter.toString(duml), false).getDuml());
+        }
+    }
+
+    @Test
+    public void testBinarySnapshotMatchesParse() throws Exception {
+        for (boolean trimValues : new boolean[] { false, true }) {
+            DumlParseResult expected = DumlParser.parse(dumlFile, trimValues);
+            DumlParseResult actual = DumlBinary.read(DumlBinary.toBytes(expected));
+            assertEquals(expected, actual);
+            assertEquals(expected.toString(), actual.toString());
+            assertTrue(actual.getDuml().isFrozen());
+        }
+    }
+
+    @Test
+    public void testLazyMatchesParse() throws Exception {
+        byte[] bytes = Files.readAllBytes(dumlFile.toPath());
+        for (boolean trimValues : new boolean[] { false, true }) {
+            DumlParseResult expected = DumlParser.parse(bytes, trimValues);
+            DumlParseResult actual = DumlParser.parseLazy(ByteBuffer.wrap(bytes), trimValues);
+            assertEquals(expected.toString(), actual.toString());
+            assertEquals(expected, actual);
+            assertEquals(expected, DumlParser.parseLazy(dumlFile.toPath(), trimValues));
+        }
+    }
+
+    @Test
+    public void testInterningMatchesParse() throws Exception {
+        byte[] bytes = Files.readAllBytes(dumlFile.toPath());
+        // Small enough that strings collide and replace each other
+        DumlInterner interner = DumlInterner.withCapacity(4);
+        for (boolean trimValues : new boolean[] { false, true }) {
+            DumlParseResult expected = DumlParser.parse(bytes, trimValues);
+            DumlParserOptions options = DumlParserOptions.builder().trimValues(trimValues).internValues(true).build();
+            assertEquals(expected, DumlParser.parse(bytes, options));
+            assertEquals(expected, DumlParser.parse(dumlFile, options));
+            DumlParserOptions sharedOptions = DumlParserOptions.builder().trimValues(trimValues).internValues(true).interner(interner).build();
+            assertEquals(expected, DumlParser.parse(bytes, sharedOptions));
+            assertEquals(expected, DumlParser.parse(dumlFile, sharedOptions));
+        }
+    }
+
+    @Test
+    public void testPushParserMatchesParseForAnyChunkSize() throws Exception {
+        byte[] bytes = Files.readAllBytes(dumlFile.toPath());
+        for (boolean trimValues : new boolean[] { false, true }) {
+            DumlParseResult expected = DumlParser.parse(bytes, trimValues);
+            for (int chunkSize : new int[] { 1, 2, 3, 7, 64, bytes.length + 1 }) {
+                DumlPushParser pushParser = DumlPushParser.create(trimValues);
+                for (int start = 0; start < bytes.length; start += chunkSize) {
+                    pushParser.feed(ByteBuffer.wrap(bytes, start, Math.min(chunkSize, bytes.length - start)));
+                }
+                assertEquals("Chunk size " + chunkSize, expected, pushParser.finish());
+            }
+        }
+    }
+
     public void testTestCase(boolean trimValues) throws Exception {
         File jsonFile = new File(dumlFile.getParent(), dumlFile.getName().replace(".duml", ".json"));
         if (trimValues) {
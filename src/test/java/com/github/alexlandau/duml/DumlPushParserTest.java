@@ -0,0 +1,161 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class DumlPushParserTest {
+    // "caf\u00e9" and a character outside the BMP, which take two and four bytes in UTF-8
+    private static final String DUML = "a.b caf\u00e9\r\nc \uD83D\uDE00 \n# comment \u00e9\nd.e.f  x y \r\n\r\ng";
+
+    private static DumlParseResult pushEachByte(byte[] bytes, boolean trimValues) {
+        DumlPushParser pushParser = DumlPushParser.create(trimValues);
+        for (byte b : bytes) {
+            pushParser.feed(ByteBuffer.wrap(new byte[] { b }));
+        }
+        return pushParser.finish();
+    }
+
+    @Test
+    public void testCharactersAndLineBreaksSplitBetweenChunks() {
+        byte[] bytes = DUML.getBytes(StandardCharsets.UTF_8);
+        for (boolean trimValues : new boolean[] { false, true }) {
+            DumlParseResult expected = DumlParser.parse(DUML, trimValues);
+            assertEquals(expected, pushEachByte(bytes, trimValues));
+        }
+        assertEquals("caf\u00e9", pushEachByte(bytes, true).getDuml().get("a").get("b").getStrings().get(0));
+        assertEquals("\uD83D\uDE00", pushEachByte(bytes, true).getDuml().get("c").getStrings().get(0));
+    }
+
+    @Test
+    public void testFeedConsumesTheChunk() {
+        DumlPushParser pushParser = DumlPushParser.create(false);
+        ByteBuffer chunk = ByteBuffer.wrap("a 1\nb 2".getBytes(StandardCharsets.UTF_8));
+        pushParser.feed(chunk);
+        assertFalse(chunk.hasRemaining());
+        // The chunk can be reused without affecting the partial line
+        chunk.clear();
+        chunk.put("XXXXXXX".getBytes(StandardCharsets.UTF_8));
+        pushParser.feed(ByteBuffer.wrap("3\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(DumlParser.parse("a 1\nb 23\n", false), pushParser.finish());
+    }
+
+    @Test
+    public void testLongLineAcrossManyChunks() {
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            longValue.append((char) ('a' + i % 26));
+        }
+        String duml = "key " + longValue + "\nother 1\n";
+        byte[] bytes = duml.getBytes(StandardCharsets.UTF_8);
+        DumlPushParser pushParser = DumlPushParser.create(false);
+        for (int start = 0; start < bytes.length; start += 100) {
+            pushParser.feed(ByteBuffer.wrap(bytes, start, Math.min(100, bytes.length - start)));
+        }
+        assertEquals(DumlParser.parse(duml, false), pushParser.finish());
+    }
+
+    @Test
+    public void testMetricsCountAllChunks() {
+        AtomicReference<DumlParseMetrics> metrics = new AtomicReference<>();
+        DumlPushParser pushParser = DumlPushParser.create(DumlParserOptions.builder().listener(metrics::set).build());
+        pushParser.feed(ByteBuffer.wrap("a 1\nb".getBytes(StandardCharsets.UTF_8)));
+        pushParser.feed(ByteBuffer.wrap(" 2\nc 3".getBytes(StandardCharsets.UTF_8)));
+        pushParser.finish();
+        assertEquals(11, metrics.get().getInputSize());
+        assertEquals(3, metrics.get().getLineCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFeedAfterFinishThrows() {
+        DumlPushParser pushParser = DumlPushParser.create(false);
+        pushParser.finish();
+        pushParser.feed(ByteBuffer.allocate(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFinishTwiceThrows() {
+        DumlPushParser pushParser = DumlPushParser.create(false);
+        pushParser.finish();
+        pushParser.finish();
+    }
+
+    @Test
+    public void testReadableByteChannel() throws IOException {
+        byte[] bytes = DUML.getBytes(StandardCharsets.UTF_8);
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(bytes));
+        assertEquals(DumlParser.parse(DUML, true),
+                DumlParser.parse(channel, DumlParserOptions.builder().trimValues(true).build()));
+    }
+
+    @Test
+    public void testSubscriber() throws Exception {
+        byte[] bytes = DUML.getBytes(StandardCharsets.UTF_8);
+        DumlPushParser.Subscriber subscriber = DumlPushParser.subscriber(DumlParserOptions.of(true));
+        try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(subscriber);
+            for (int start = 0; start < bytes.length; start += 3) {
+                publisher.submit(ByteBuffer.wrap(bytes, start, Math.min(3, bytes.length - start)));
+            }
+        }
+        assertEquals(DumlParser.parse(DUML, true), subscriber.getResult().get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSubscriberPassesOnPublisherErrors() throws Exception {
+        DumlPushParser.Subscriber subscriber = DumlPushParser.subscriber(DumlParserOptions.of(true));
+        SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>();
+        publisher.subscribe(subscriber);
+        publisher.submit(ByteBuffer.wrap("a 1\n".getBytes(StandardCharsets.UTF_8)));
+        publisher.closeExceptionally(new IOException("Connection reset"));
+        try {
+            subscriber.getResult().get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals("Connection reset", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testParseAsyncFile() throws Exception {
+        Path file = Files.createTempFile("duml-push-parser-test", ".duml");
+        try {
+            StringBuilder duml = new StringBuilder();
+            for (int i = 0; i < 20000; i++) {
+                duml.append("key").append(i % 100).append(".part").append(i % 7).append(" caf\u00e9 ").append(i).append('\n');
+            }
+            Files.write(file, duml.toString().getBytes(StandardCharsets.UTF_8));
+            CompletableFuture<DumlParseResult> result = DumlParser.parseAsync(file, DumlParserOptions.of(true));
+            assertEquals(DumlParser.parse(file, true), result.get(10, TimeUnit.SECONDS));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testParseAsyncMissingFile() throws Exception {
+        Path missing = Files.createTempDirectory("duml-push-parser-test");
+        Files.delete(missing);
+        try {
+            DumlParser.parseAsync(missing, DumlParserOptions.of(true)).get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NoSuchFileException);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DumlQueryTest {
+    private static final String SERVERS = "servers.alpha.port 80\n" +
+            "servers.alpha.region eu\n" +
+            "servers.beta.port 81\n" +
+            "servers.beta.region us\n" +
+            "servers.gamma.region eu\n" +
+            "features.search true\n" +
+            "features.beta.chat true\n" +
+            "features.beta.video false\n" +
+            "features.legacy true\n" +
+            "features.legacy false\n";
+
+    private static DumlNode parse(String duml) {
+        return DumlParser.parse(duml, true).getDuml();
+    }
+
+    private static List<String> paths(String query, String duml) {
+        List<String> paths = new ArrayList<>();
+        DumlQuery.compile(query).forEach(parse(duml), (path, node) -> paths.add(path.toString()));
+        return paths;
+    }
+
+    @Test
+    public void testExactPath() {
+        assertEquals(Collections.singletonList("servers.beta.port"), paths("servers.beta.port", SERVERS));
+        assertEquals(Collections.emptyList(), paths("servers.delta.port", SERVERS));
+        assertEquals(Collections.emptyList(), paths("servers.beta.port.more", SERVERS));
+    }
+
+    @Test
+    public void testWildcard() {
+        assertEquals(Arrays.asList("servers.alpha.port", "servers.beta.port"), paths("servers.*.port", SERVERS));
+        assertEquals(Arrays.asList("80", "81"), strings(DumlQuery.compile("servers.*.port").select(parse(SERVERS))));
+    }
+
+    @Test
+    public void testAnyDepth() {
+        assertEquals(Arrays.asList("servers.alpha.region", "servers.beta.region", "servers.gamma.region"),
+                paths("**.region", SERVERS));
+        assertEquals(Collections.singletonList("features.beta.chat"), paths("features.**.chat.**", SERVERS));
+        assertEquals(Arrays.asList("", "a"), paths("**", "a 1\n"));
+    }
+
+    @Test
+    public void testEachNodeIsFoundOnce() {
+        assertEquals(Arrays.asList("a.a", "a.a.a", "a.a.a.a"), paths("**.a.a", "a.a.a.a 1\n"));
+        assertEquals(Collections.singletonList("a.b"), paths("a.**.b", "a.b 1\n"));
+    }
+
+    @Test
+    public void testOwnValuePredicate() {
+        assertEquals(Arrays.asList("features.search", "features.beta.chat"), paths("features.**.*[=true]", SERVERS));
+        assertEquals(Arrays.asList("features.beta.video", "features.legacy"), paths("features.**.*[=false]", SERVERS));
+    }
+
+    @Test
+    public void testChildPredicates() {
+        assertEquals(Arrays.asList("servers.alpha", "servers.gamma"), paths("servers.*[region=eu]", SERVERS));
+        assertEquals(Collections.singletonList("servers.alpha.port"), paths("servers.*[region=eu].port", SERVERS));
+        assertEquals(Arrays.asList("servers.alpha", "servers.beta"), paths("servers.*[port]", SERVERS));
+        assertEquals(Collections.singletonList("servers.beta"), paths("servers.*[port][region=us]", SERVERS));
+        assertEquals(Collections.singletonList("servers"), paths("servers[beta.port=81]", SERVERS));
+    }
+
+    @Test
+    public void testPredicatesBeforeAnyDepthOnlyApplyToTheirOwnStep() {
+        String duml = "a.x 1\na.c.b hello\na.b direct\n";
+        assertEquals(Arrays.asList("a.c.b", "a.b"), paths("a.**.b", duml));
+        assertEquals(Arrays.asList("a.c.b", "a.b"), paths("a[x=1].**.b", duml));
+        assertEquals(Collections.emptyList(), paths("a[x=2].**.b", duml));
+        assertEquals(Collections.singletonList("a.c.b"), paths("*[x=1].**.*[=hello]", duml));
+    }
+
+    @Test
+    public void testInvalidQueries() {
+        for (String query : Arrays.asList("", "a..b", "a.", "a[b", "a]b", "**[=x]", "a[b]c")) {
+            try {
+                DumlQuery.compile(query);
+                fail("Expected " + query + " to be invalid");
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesKey() {
+        DumlQuery query = DumlQuery.compile("servers.*.port");
+        assertTrue(query.matchesKey("servers.alpha.port"));
+        assertTrue(query.matchesKey("servers.alpha.port."));
+        assertFalse(query.matchesKey("servers.alpha"));
+        assertFalse(query.matchesKey("servers.alpha.port.x"));
+        assertFalse(query.matchesKey("servers.a.b.port"));
+        assertTrue(DumlQuery.compile("**.port").matchesKey("servers.a.b.port"));
+        assertTrue(DumlQuery.compile("**").matchesKey(""));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMatchesKeyRejectsPredicates() {
+        DumlQuery.compile("servers.*[port]").matchesKey("servers.a");
+    }
+
+    @Test
+    public void testFilterAgreesWithTree() {
+        for (String query : Arrays.asList("servers.*.port", "**.region", "features.*", "features.**.*[=true]", "**")) {
+            List<String> lines = new ArrayList<>();
+            DumlParser.parse(SERVERS, true, DumlQuery.compile(query).filter((key, value, line) -> lines.add(key.toString())));
+            List<String> distinctLines = new ArrayList<>();
+            for (String line : lines) {
+                if (!distinctLines.contains(line)) {
+                    distinctLines.add(line);
+                }
+            }
+            List<String> leaves = new ArrayList<>();
+            DumlQuery.compile(query).forEach(parse(SERVERS), (path, node) -> {
+                if (node.isStrings()) {
+                    leaves.add(path.toString());
+                }
+            });
+            if (query.endsWith("[=true]")) {
+                // Lines are matched by their own values, and "features.legacy" had a "true" line
+                assertEquals(Arrays.asList("features.search", "features.beta.chat", "features.legacy"), distinctLines);
+                assertEquals(Arrays.asList("features.search", "features.beta.chat"), leaves);
+            } else {
+                assertEquals(query, leaves, distinctLines);
+            }
+        }
+    }
+
+    @Test
+    public void testFilterPassesLineNumbersAndValues() {
+        List<String> events = new ArrayList<>();
+        DumlParser.parse("# comment\na 1\nb 2\na 3\n", true,
+                DumlQuery.compile("a").filter((key, value, line) -> events.add(line + ": " + key + " = " + value)));
+        assertEquals(Arrays.asList("2: a = 1", "4: a = 3"), events);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFilterRejectsChildPredicates() {
+        DumlQuery.compile("servers.*[region=eu]").filter((key, value, line) -> { });
+    }
+
+    @Test
+    public void testToStringAndEquality() {
+        assertEquals("servers.*[region=eu]", DumlQuery.compile("servers.*[region=eu]").toString());
+        assertEquals(DumlQuery.compile("a.*"), DumlQuery.compile("a.*"));
+        assertNotEquals(DumlQuery.compile("a.*"), DumlQuery.compile("a.**"));
+    }
+
+    private static List<String> strings(List<DumlNode> nodes) {
+        List<String> strings = new ArrayList<>();
+        for (DumlNode node : nodes) {
+            strings.add(node.getLastString());
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DumlReaderTest {
+    @Test
+    public void testEntries() throws IOException {
+        DumlReader reader = DumlReader.of("# comment\na.b.c one\n\nkey\n a  two \n", false);
+        assertTrue(reader.next());
+        assertEquals("a.b.c", reader.key().toString());
+        assertEquals("one", reader.value().toString());
+        assertEquals(2, reader.line());
+        assertTrue(reader.next());
+        assertEquals("key", reader.key().toString());
+        assertEquals("", reader.value().toString());
+        assertEquals(4, reader.line());
+        assertTrue(reader.next());
+        assertEquals("", reader.key().toString());
+        assertEquals("a  two ", reader.value().toString());
+        assertEquals(5, reader.line());
+        assertFalse(reader.next());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void testTrimming() throws IOException {
+        DumlReader reader = DumlReader.of("a \t two \t\r\nb\t", true);
+        assertTrue(reader.next());
+        assertEquals("two", reader.value().toString());
+        assertTrue(reader.next());
+        assertEquals("", reader.value().toString());
+        assertEquals(2, reader.line());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void testKeyPartsFollowSplit() throws IOException {
+        for (String key : Arrays.asList("a.b.c", "a", "a..b", "a.b.", "a..", ".a", ".", "..")) {
+            DumlReader reader = DumlReader.of(key + " value", false);
+            assertTrue(reader.next());
+            List<String> parts = new ArrayList<>();
+            for (int i = 0; i < reader.keyPartCount(); i++) {
+                parts.add(reader.keyPart(i).toString());
+            }
+            assertEquals(key, Arrays.asList(key.split("\\.")), parts);
+        }
+        DumlReader reader = DumlReader.of(" value", false);
+        assertTrue(reader.next());
+        assertEquals(1, reader.keyPartCount());
+        assertEquals("", reader.keyPart(0).toString());
+    }
+
+    @Test
+    public void testKeyPartViewsStayValidTogether() throws IOException {
+        DumlReader reader = DumlReader.of("first.second.third value", false);
+        assertTrue(reader.next());
+        CharSequence first = reader.keyPart(0);
+        CharSequence third = reader.keyPart(2);
+        assertEquals("first", first.toString());
+        assertEquals("third", third.toString());
+    }
+
+    @Test
+    public void testLinesLongerThanBuffer() throws IOException {
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            longValue.append((char) ('a' + i % 26));
+        }
+        StringBuilder duml = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            duml.append("key").append(i).append(' ').append(longValue).append('\n');
+        }
+        DumlReader reader = DumlReader.of(duml.toString(), false);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(reader.next());
+            assertEquals("key" + i, reader.key().toString());
+            assertEquals(longValue.toString(), reader.value().toString());
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void testStopEarly() throws IOException {
+        StringBuilder duml = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            duml.append("key").append(i).append(" value\n");
+        }
+        String found = null;
+        try (DumlReader reader = DumlReader.of(duml.toString(), false)) {
+            while (reader.next()) {
+                if (reader.key().toString().equals("key42")) {
+                    found = reader.value().toString();
+                    break;
+                }
+            }
+        }
+        assertEquals("value", found);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoCurrentEntry() {
+        DumlReader.of("a b", false).key();
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class DumlSnapshotTest {
+    @Test
+    public void testResultsAreFrozen() {
+        DumlParseResult parsed = DumlParser.parse("a.b one\na two", false);
+        DumlSnapshot snapshot = DumlSnapshot.of(parsed);
+        assertEquals(parsed, snapshot.get());
+        assertTrue(snapshot.getDuml().isFrozen());
+        assertTrue(snapshot.get().getLostNodes().get(0).getNode().isFrozen());
+        assertEquals("two", snapshot.getDuml().getLastString("a"));
+
+        DumlParseResult first = snapshot.get();
+        assertSame(first, snapshot.set(DumlParser.parse("a three", false)));
+        assertEquals("three", snapshot.getDuml().getLastString("a"));
+        assertEquals("two", first.getDuml().getLastString("a"));
+
+        assertFalse(snapshot.compareAndSet(first, DumlParser.parse("a four", false)));
+        assertTrue(snapshot.compareAndSet(snapshot.get(), DumlParser.parse("a five", false)));
+        assertEquals("five", snapshot.getDuml().getLastString("a"));
+    }
+
+    @Test
+    public void testConcurrentReadersDuringReloads() throws Exception {
+        DumlSnapshot snapshot = DumlSnapshot.of(DumlParser.parse("version 0\ncopy.version 0", false));
+        DumlPath copyPath = DumlPath.of("copy.version");
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        DumlNode duml = snapshot.getDuml();
+                        assertEquals(duml.getLastString("version"), duml.getLastString(copyPath));
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        for (int version = 1; version <= 1000; version++) {
+            snapshot.set(DumlParser.parse("version " + version + "\ncopy.version " + version, false));
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+        assertEquals("1000", snapshot.getDuml().getLastString("version"));
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.alexlandau.duml;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class DumlWriterTest {
+    @Test
+    public void testWritesOneLinePerString() {
+        DumlNode duml = DumlParser.parse("a.b 1\nc 2\na.d\na.b 3\n e\n", false).getDuml();
+        assertEquals("a.b 1\na.b 3\na.d\nc 2\n e\n", DumlWriter.toString(duml));
+    }
+
+    @Test
+    public void testEmptyKeyWithEmptyValue() {
+        DumlNode duml = DumlNode.emptyObject();
+        duml.getMap().put("", DumlNode.strings(Arrays.asList("", "x")));
+        assertEquals(" \n x\n", DumlWriter.toString(duml));
+        assertEquals(duml, DumlParser.parse(DumlWriter.toString(duml), false).getDuml());
+    }
+
+    @Test
+    public void testEmptyNodesAreLeftOut() {
+        DumlNode duml = DumlParser.parse("a.b 1", false).getDuml();
+        duml.getMap().put("c", DumlNode.emptyObject());
+        duml.get("a").getMap().put("d", DumlNode.emptyStrings());
+        assertEquals("a.b 1\n", DumlWriter.toString(duml));
+    }
+
+    @Test
+    public void testAllOutputsMatch() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            // Non-ASCII characters, including surrogate pairs, around the buffer boundaries
+            text.append("k").append(i % 7).append(".\u00e9").append(i % 3).append(' ');
+            for (int j = 0; j < i % 50; j++) {
+                text.append(j % 5 == 0 ? "\ud83d\ude00" : j % 5 == 1 ? "\u4e2d" : "v");
+            }
+            text.append('\n');
+        }
+        DumlNode duml = DumlParser.parse(text.toString(), false).getDuml();
+        String written = DumlWriter.toString(duml);
+        assertEquals(duml, DumlParser.parse(written, false).getDuml());
+
+        StringWriter writer = new StringWriter();
+        DumlWriter.write(duml, writer);
+        assertEquals(written, writer.toString());
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        DumlWriter.write(duml, stream);
+        assertArrayEquals(written.getBytes(StandardCharsets.UTF_8), stream.toByteArray());
+
+        ByteBuffer buffer = ByteBuffer.allocate(stream.size());
+        DumlWriter.write(duml, buffer);
+        assertArrayEquals(stream.toByteArray(), buffer.array());
+    }
+
+    @Test
+    public void testLongValues() throws Exception {
+        char[] longValue = new char[20000];
+        Arrays.fill(longValue, '\u00e9');
+        DumlNode duml = DumlNode.emptyObject();
+        duml.getMap().put("a", DumlNode.strings(Collections.singletonList(new String(longValue))));
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        DumlWriter.write(duml, stream);
+        assertEquals(duml, DumlParser.parse(stream.toByteArray(), false).getDuml());
+    }
+
+    @Test
+    public void testUnpairedSurrogatesMatchStringEncoding() throws Exception {
+        DumlNode duml = DumlNode.emptyObject();
+        duml.getMap().put("\ud800a", DumlNode.strings(Collections.singletonList("b\udc00\ud800")));
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        DumlWriter.write(duml, stream);
+        assertArrayEquals(DumlWriter.toString(duml).getBytes(StandardCharsets.UTF_8), stream.toByteArray());
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void testBufferTooSmall() {
+        DumlWriter.write(DumlParser.parse("a 1", false).getDuml(), ByteBuffer.allocate(3));
+    }
+
+    @Test
+    public void testUnwritableTrees() {
+        assertUnwritable("a b", "c");
+        assertUnwritable("a.b", "c");
+        assertUnwritable("#a", "c");
+        assertUnwritable("a", "b\nc");
+        DumlNode trailingEmptyPart = DumlNode.emptyObject();
+        DumlNode child = DumlNode.emptyObject();
+        child.getMap().put("", DumlNode.strings(Collections.singletonList("x")));
+        trailingEmptyPart.getMap().put("a", child);
+        try {
+            DumlWriter.toString(trailingEmptyPart);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static void assertUnwritable(String key, String value) {
+        DumlNode duml = DumlNode.emptyObject();
+        duml.getMap().put(key, DumlNode.strings(Collections.singletonList(value)));
+        try {
+            DumlWriter.toString(duml);
+            fail("Expected " + key + " " + value + " to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}